@@ -0,0 +1,143 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.exceptions.DeadLockException;
+import io.github.alekseykn.imnorm.where.Condition;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous view of repository. Operations are executed on the specified executor instead of the calling thread.
+ * Clusters, which are needed for operation and stored only in file system, are uploaded to RAM
+ * on the separate pool of threads for input-output, so threads of the executor do not wait for reading of files.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+public final class AsyncRepository<Record> {
+    /**
+     * Pool of threads for reading of clusters from file system
+     */
+    private static final ExecutorService ioExecutor = Executors.newCachedThreadPool(task -> {
+        Thread ioThread = new Thread(task, "imnorm-io");
+        ioThread.setDaemon(true);
+        return ioThread;
+    });
+
+    /**
+     * Repository, which executes operations
+     */
+    private final Repository<Record> repository;
+
+    /**
+     * Executor of operations
+     */
+    private final Executor executor;
+
+    /**
+     * @param repository Repository, which executes operations
+     * @param executor   Executor of operations
+     */
+    AsyncRepository(final Repository<Record> repository, final Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * Find record with current id
+     *
+     * @param id Id of the record being searched
+     * @return Future of found record
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Optional<Record>> findById(final Object id) {
+        return execute(() -> List.of(repository.getHashFromId(id)), () -> repository.findById(id));
+    }
+
+    /**
+     * Add new record if record with current id not exist in data storage.
+     * Update record if current id exist in data storage.
+     *
+     * @param record Record for save
+     * @return Future of saved record with new id, if auto-generate on
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Record> save(final Record record) {
+        return execute(() -> List.of(repository.getHashIdFromRecord(record)), () -> repository.save(record));
+    }
+
+    /**
+     * Save records collection to data storage: add new records and update exists records.
+     *
+     * @param records Added records collection
+     * @return Future of incoming collection with changed ids, where necessary
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Set<Record>> saveAll(final Collection<Record> records) {
+        return execute(() -> records.stream().map(repository::getHashIdFromRecord).collect(Collectors.toSet()),
+                () -> repository.saveAll(records));
+    }
+
+    /**
+     * Remove record with current id
+     *
+     * @param id Id of the record being deleted
+     * @return Future of record, which was deleted from repository
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Optional<Record>> deleteById(final Object id) {
+        return execute(() -> List.of(repository.getHashFromId(id)), () -> repository.deleteById(id));
+    }
+
+    /**
+     * Remove current record
+     *
+     * @param record Record being deleted
+     * @return Future of record, which was deleted from repository
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Optional<Record>> delete(final Record record) {
+        return execute(() -> List.of(repository.getHashIdFromRecord(record)), () -> repository.delete(record));
+    }
+
+    /**
+     * Find all records, suitable for the specified condition.
+     * If some clusters are stored only in file system, search is executed on the pool of threads for input-output.
+     *
+     * @param condition Condition for search
+     * @return Future of suitable for the specified condition records
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public CompletableFuture<Set<Record>> findAll(final Condition<Record> condition) {
+        return CompletableFuture.supplyAsync(repository::isInRam, executor)
+                .thenCompose(inRam -> CompletableFuture.supplyAsync(() -> repository.findAll(condition),
+                        inRam ? executor : ioExecutor));
+    }
+
+    /**
+     * Executes operation on the executor after uploading of needed clusters on the pool of threads for input-output
+     *
+     * @param hashes    Hashes of id of records, which are used by operation
+     * @param operation Operation with repository
+     * @param <Result>  Type of result of operation
+     * @return Future of result of operation
+     */
+    private <Result> CompletableFuture<Result> execute(final Supplier<Collection<Long>> hashes,
+                                                      final Supplier<Result> operation) {
+        return CompletableFuture.supplyAsync(() -> hashes.get().stream()
+                        .filter(hash -> !repository.isInRam(hash))
+                        .collect(Collectors.toList()), executor)
+                .thenCompose(cold -> cold.isEmpty()
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : CompletableFuture.runAsync(() -> cold.forEach(repository::findCurrentClusterFromId), ioExecutor))
+                .thenApplyAsync(uploaded -> operation.get(), executor);
+    }
+}
@@ -2,25 +2,45 @@ package io.github.alekseykn.imnorm;
 
 import io.github.alekseykn.imnorm.exceptions.DeadLockException;
 import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import io.github.alekseykn.imnorm.exceptions.LockTimeoutException;
+import io.github.alekseykn.imnorm.exceptions.TransactionExpiredException;
+import io.github.alekseykn.imnorm.exceptions.TransactionWasClosedException;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * Block for keeping records. All clusters correspond to some files from the file data storage.
  * The cluster monitors the changes of its data to track the need for overwriting to disk.
  * Clusters realise transactional behavior: if a transaction affects the current cluster,
  * it creates a copy of its data for later use as the main data in the case of a commit.
+ * Row-locking transactions capture only the records they access and keep their changes apart from the main data
+ * until commit, so transactions working with different records of one cluster do not wait for each other.
+ * Optimistic transactions keep their changes the same way without capturing anything.
+ * The cluster tracks versions of changes of its records for validation of optimistic transactions.
  *
  * @param <Record> Type of entity for this cluster
  * @author Aleksey-Kn
  */
 public final class Cluster<Record> {
+    /**
+     * Source of versions of changes, used for validation of optimistic transactions
+     */
+    private static final AtomicLong versionSequence = new AtomicLong();
+
     /**
      * Repository, to which belongs this cluster
      */
@@ -31,7 +51,51 @@ public final class Cluster<Record> {
      * Copy of records for transactional call. Will be written as basic data in case commit transaction,
      * will be dropped in case rollback transaction.
      */
-    private TreeMap<Integer, Map<Object ,Record>> copyDataForTransactions = null;
+    private TreeMap<Long, Map<Object ,Record>> copyDataForTransactions = null;
+
+    /**
+     * Temporary file, to which the copy of records for transactional call was spilled to free RAM.
+     * Null, if the copy is in RAM or not exists.
+     */
+    private File spilledCopy = null;
+
+    /**
+     * Transaction, which captured this cluster entirely and owns the copy of records
+     */
+    private Transaction owner = null;
+
+    /**
+     * Records captured by row-locking transactions: hash and id of record mapped to the transaction-owner
+     */
+    private final Map<Long, Map<Object, Transaction>> rowLocks = new HashMap<>();
+
+    /**
+     * Changes of records made by row-locking and optimistic transactions.
+     * Will be written to basic data in case commit transaction.
+     * Null value means that record was deleted in transaction.
+     */
+    private final Map<Transaction, TreeMap<Long, Map<Object, Record>>> transactionChanges = new HashMap<>();
+
+    /**
+     * Optimistic transactions, which read records of this cluster. The cluster is not dropped from RAM,
+     * while they are open, because validation of their reads needs the same cluster.
+     */
+    private final Set<Transaction> optimisticReaders = new HashSet<>();
+
+    /**
+     * Version of the last change of records of this cluster
+     */
+    private long version = versionSequence.incrementAndGet();
+
+    /**
+     * Version of records, which changes are not tracked separately
+     */
+    private long baseVersion = version;
+
+    /**
+     * Versions of changes of separate records. Tracked only while optimistic transactions are open.
+     */
+    private final Map<Long, Long> rowVersions = new HashMap<>();
 
     /**
      * Indicator of changes in the cluster. It is needed for tracking the need to write to disk.
@@ -41,22 +105,33 @@ public final class Cluster<Record> {
     /**
      * Matching records and their string identifier
      */
-    private TreeMap<Integer, Map<Object ,Record>> data = new TreeMap<>();
+    private CompactRecords<Record> data;
+
+    /**
+     * Quantity of records in basic data
+     */
+    private int size;
+
+    /**
+     * Quantity of records in the copy of records for transactional call
+     */
+    private int copySize = 0;
 
     /**
      * The minimum identifier allowed for storage in this cluster
      */
-    private final int firstKey;
+    private final long firstKey;
 
     /**
-     * Count transaction is waiting for this cluster to be released
+     * Threads, waiting for release of this cluster or its records, in order of arrival
      */
-    private int waitingTransactionCount = 0;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
 
     /**
      * ID of whether this cluster is active
      */
     @Setter
+    @Getter(AccessLevel.PACKAGE)
     private boolean dropped = false;
 
     /**
@@ -66,10 +141,27 @@ public final class Cluster<Record> {
      * @param map   Record collection
      * @param owner Repository, to which belongs this cluster
      */
-    Cluster(final int firstKey, final TreeMap<Integer, Map<Object ,Record>> map, final Repository<Record> owner) {
-        data = map;
+    Cluster(final long firstKey, final TreeMap<Long, Map<Object ,Record>> map, final Repository<Record> owner) {
+        data = new CompactRecords<>(owner, map);
+        size = data.countRecords();
         repository = owner;
         this.firstKey = firstKey;
+        if (owner.indexes.isEnabled()) {
+            owner.indexes.addAll(data.records());
+        }
+    }
+
+    /**
+     * Create cluster with records, separated from other cluster
+     *
+     * @param records Separated records
+     * @param owner   Repository, to which belongs this cluster
+     */
+    private Cluster(final CompactRecords<Record> records, final Repository<Record> owner) {
+        data = records;
+        size = records.countRecords();
+        repository = owner;
+        firstKey = records.firstKey();
     }
 
     /**
@@ -80,13 +172,16 @@ public final class Cluster<Record> {
      * @param owner       Repository, to which belongs this cluster
      * @param transaction Transaction, in which create cluster
      */
-    Cluster(final int firstKey, final TreeMap<Integer, Map<Object ,Record>> map, final Repository<Record> owner,
+    Cluster(final long firstKey, final TreeMap<Long, Map<Object ,Record>> map, final Repository<Record> owner,
             final Transaction transaction) {
+        data = new CompactRecords<>(owner);
         copyDataForTransactions = map;
+        copySize = countRecords(map);
         repository = owner;
         this.firstKey = firstKey;
 
         transaction.captureLock(this);
+        this.owner = transaction;
     }
 
     /**
@@ -96,12 +191,15 @@ public final class Cluster<Record> {
      * @param record Current record for save in cluster
      * @param owner  Repository, to which belongs this cluster
      */
-    Cluster(final int hashId, Object id, Record record, final Repository<Record> owner) {
-        data.put(hashId, new HashMap<>());
-        data.get(hashId).put(id, record);
+    Cluster(final long hashId, Object id, Record record, final Repository<Record> owner) {
+        data = new CompactRecords<>(owner);
+        data.put(hashId, id, record);
+        size = 1;
+        owner.indexes.add(record);
 
         repository = owner;
         this.firstKey = hashId;
+        repository.addToSize(1);
     }
 
     /**
@@ -112,15 +210,18 @@ public final class Cluster<Record> {
      * @param owner       Repository, to which belongs this cluster
      * @param transaction The transaction to which this record will belong
      */
-    Cluster(final int hashId, Object id, final Record record, final Repository<Record> owner, final Transaction transaction) {
+    Cluster(final long hashId, Object id, final Record record, final Repository<Record> owner, final Transaction transaction) {
+        data = new CompactRecords<>(owner);
         copyDataForTransactions = new TreeMap<>();
         copyDataForTransactions.put(hashId, new HashMap<>());
         copyDataForTransactions.get(hashId).put(id, record);
+        copySize = 1;
 
         repository = owner;
         this.firstKey = hashId;
 
         transaction.captureLock(this);
+        this.owner = transaction;
     }
 
     /**
@@ -130,18 +231,20 @@ public final class Cluster<Record> {
      * @param record Record, which will be put on current string identifier
      * @throws DeadLockException Current record lock from other transaction
      */
-    void set(final int key, final Object id, final Record record) {
-        waitAndCheckDeadLock();
+    void set(final long key, final Object id, final Record record) {
+        waitAndCheckDeadLock(key, id);
         if(dropped) {
             repository.save(record);
             return;
         }
         redacted = true;
+        markChanged(key);
 
-        if(!data.containsKey(key)) {
-            data.put(key, new HashMap<>());
+        Record previous = data.put(key, id, record);
+        repository.indexes.replace(previous, record);
+        if (Objects.isNull(previous)) {
+            changeSize(1);
         }
-        data.get(key).put(id, record);
     }
 
     /**
@@ -152,17 +255,108 @@ public final class Cluster<Record> {
      * @param transaction Transaction, in which execute setting
      * @throws DeadLockException Current record lock from other transaction
      */
-    void set(final int key, final Object id, final Record record, final Transaction transaction) {
+    void set(final long key, final Object id, final Record record, final Transaction transaction) {
+        if (keepsChanges(transaction)) {
+            repository.repositoryLock.lock();
+            try {
+                lockRow(key, id, transaction);
+                if (keepsKey(key)) {
+                    putChange(key, id, record, transaction);
+                } else {
+                    repository.save(record, transaction);
+                }
+            } finally {
+                repository.repositoryLock.unlock();
+            }
+            return;
+        }
         lock(transaction);
         if(dropped) {
             repository.save(record, transaction);
             return;
         }
 
-        if(!copyDataForTransactions.containsKey(key)) {
-            copyDataForTransactions.put(key, new HashMap<>());
+        withCopy(transaction, copy -> {
+            if (Objects.isNull(copy.computeIfAbsent(key, hash -> new HashMap<>()).put(id, record))) {
+                copySize++;
+            }
+            return copy;
+        });
+    }
+
+    /**
+     * Checks, that records with specified hashes of id can not be changed without transaction now
+     *
+     * @param keys Hashes of id of the records being changed
+     * @return True, if the cluster or some of the records are captured by transaction
+     */
+    boolean isBlockedFor(final Set<Long> keys) {
+        return Objects.nonNull(owner) || keys.stream().anyMatch(rowLocks::containsKey);
+    }
+
+    /**
+     * Waits, while the cluster or records with specified hashes of id are captured by transactions
+     *
+     * @param keys Hashes of id of the records being changed
+     * @throws LockTimeoutException The maximum waiting time has been exceeded
+     */
+    void waitReleaseOf(final Set<Long> keys) {
+        if (!awaitRelease(() -> isBlockedFor(keys), TimeUnit.SECONDS.toNanos(1), () -> false, null))
+            throw new LockTimeoutException(firstKey);
+    }
+
+    /**
+     * Add or update records without waiting. Used for parallel saving into different clusters,
+     * so it should be called under the lock of repository after the records were released.
+     *
+     * @param records Records, grouped by hashes of id
+     */
+    void putAll(final NavigableMap<Long, Map<Object, Record>> records) {
+        redacted = true;
+        records.keySet().forEach(this::markChanged);
+        changeSize(applyChanges(records));
+    }
+
+    /**
+     * Add or update records in current transaction. Cluster is captured once for all records.
+     *
+     * @param records     Records, grouped by hashes of id
+     * @param transaction Transaction, in which execute setting
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    void setAll(final NavigableMap<Long, Map<Object, Record>> records, final Transaction transaction) {
+        if (keepsChanges(transaction) || dropped) {
+            for (Map.Entry<Long, Map<Object, Record>> values : records.entrySet()) {
+                for (Map.Entry<Object, Record> record : values.getValue().entrySet()) {
+                    set(values.getKey(), record.getKey(), record.getValue(), transaction);
+                }
+            }
+            return;
         }
-        copyDataForTransactions.get(key).put(id, record);
+        lock(transaction);
+
+        withCopy(transaction, copy -> {
+            for (Map.Entry<Long, Map<Object, Record>> values : records.entrySet()) {
+                copySize += putAll(copy, values.getKey(), values.getValue());
+            }
+            return copy;
+        });
+    }
+
+    /**
+     * Add or update records with the same hash of id in specified data
+     *
+     * @param target Records, to which new records are put
+     * @param key    Hash of id of the records
+     * @param values Records by id
+     * @return Quantity of added records, which did not exist before
+     */
+    private int putAll(final TreeMap<Long, Map<Object, Record>> target, final long key,
+                       final Map<Object, Record> values) {
+        Map<Object, Record> current = target.computeIfAbsent(key, hash -> new HashMap<>());
+        int before = current.size();
+        current.putAll(values);
+        return current.size() - before;
     }
 
     /**
@@ -172,9 +366,9 @@ public final class Cluster<Record> {
      * @return Found record or null, if record with current key not exists
      * @throws DeadLockException Current record lock from other transaction
      */
-    Record get(final int key, final Object id) {
+    Record get(final long key, final Object id) {
         waitAndCheckDeadLock();
-        return data.get(key).get(id);
+        return data.get(key, id);
     }
 
     /**
@@ -185,9 +379,24 @@ public final class Cluster<Record> {
      * @return Found record or null, if record with current key not exists
      * @throws DeadLockException Current record lock from other transaction
      */
-    Record get(final int key, final Object id, final Transaction transaction) {
+    Record get(final long key, final Object id, final Transaction transaction) {
+        if (keepsChanges(transaction)) {
+            repository.repositoryLock.lock();
+            try {
+                lockRow(key, id, transaction);
+                if (!keepsKey(key)) {
+                    return repository.findById(id, transaction).orElse(null);
+                }
+                return findWithChanges(key, id, transaction);
+            } finally {
+                repository.repositoryLock.unlock();
+            }
+        }
         lock(transaction);
-        return copyDataForTransactions.get(key).get(id);
+        return withCopy(transaction, copy -> {
+            Map<Object, Record> records = copy.get(key);
+            return Objects.isNull(records) ? null : records.get(id);
+        });
     }
 
     /**
@@ -198,9 +407,41 @@ public final class Cluster<Record> {
      */
     Collection<Record> findAll() {
         waitAndCheckDeadLock();
-        return data.values().stream()
-                .flatMap(map -> map.values().stream())
-                .collect(Collectors.toSet());
+        return new HashSet<>(data.records());
+    }
+
+    /**
+     * Find all record from this cluster in ascending order of hashes of id without building of set
+     *
+     * @return All record from this cluster
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    List<Record> findAllInOrder() {
+        waitAndCheckDeadLock();
+        return data.records();
+    }
+
+    /**
+     * Find records from this cluster, which hashes of id are not less than the specified one
+     *
+     * @param fromKey Lower bound of hashes of id, inclusive
+     * @return Found records, grouped by hashes of id in ascending order
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    NavigableMap<Long, List<Record>> findAllFrom(final long fromKey) {
+        waitAndCheckDeadLock();
+        return data.groupFrom(fromKey);
+    }
+
+    /**
+     * @param records  Records by hashes and ids
+     * @param <Record> Type of data entity
+     * @return Lists of records by hashes in ascending order
+     */
+    static <Record> NavigableMap<Long, List<Record>> groupByHash(final Map<Long, Map<Object, Record>> records) {
+        NavigableMap<Long, List<Record>> result = new TreeMap<>();
+        records.forEach((hash, values) -> result.put(hash, new ArrayList<>(values.values())));
+        return result;
     }
 
     /**
@@ -211,10 +452,25 @@ public final class Cluster<Record> {
      * @throws DeadLockException Current record lock from other transaction
      */
     Collection<Record> findAll(final Transaction transaction) {
+        if (transaction.isOptimistic() && owner != transaction) {
+            repository.repositoryLock.lock();
+            try {
+                transaction.captureLock(this);
+                optimisticReaders.add(transaction);
+                transaction.rememberScan(this, version);
+                TreeMap<Long, Map<Object, Record>> records = data.toTreeMap();
+                applyChanges(records, transactionChanges.get(transaction));
+                return records.values().stream()
+                        .flatMap(map -> map.values().stream())
+                        .collect(Collectors.toSet());
+            } finally {
+                repository.repositoryLock.unlock();
+            }
+        }
         lock(transaction);
-        return copyDataForTransactions.values().stream()
+        return withCopy(transaction, copy -> copy.values().stream()
                 .flatMap(map -> map.values().stream())
-                .collect(Collectors.toSet());
+                .collect(Collectors.toSet()));
     }
 
     /**
@@ -224,23 +480,43 @@ public final class Cluster<Record> {
      * @return Deleted record or null, if string identifier not exists
      * @throws DeadLockException Current record lock from other transaction
      */
-    Record delete(final int key, final Object id) {
-        waitAndCheckDeadLock();
+    Record delete(final long key, final Object id) {
+        waitAndCheckDeadLock(key, id);
         if(dropped) {
             return repository.innerDelete(key, id).orElse(null);
         }
 
-        if(data.containsKey(key)) {
-            Record record = data.get(key).remove(id);
-            if (Objects.nonNull(record)) {
-                redacted = true;
-                if(data.get(key).isEmpty()) {
-                    data.remove(key);
-                }
-            }
-            return record;
-        } else {
-            return null;
+        Record record = data.remove(key, id);
+        if (Objects.nonNull(record)) {
+            redacted = true;
+            markChanged(key);
+            changeSize(-1);
+            repository.indexes.remove(record);
+        }
+        return record;
+    }
+
+    /**
+     * Delete records with hashes of id inside the specified range and marks the cluster as modified, if they existed
+     *
+     * @param fromKey Lower bound of hashes of id, inclusive
+     * @param toKey   Upper bound of hashes of id, exclusive
+     * @throws LockTimeoutException Records are captured by other transaction longer than the waiting time
+     */
+    void deleteRange(final long fromKey, final long toKey) {
+        waitAndCheckDeadLockInRange(fromKey, toKey);
+        if(dropped) {
+            repository.innerDeleteRange(Math.max(fromKey, firstKey), toKey);
+            return;
+        }
+
+        Set<Long> range = data.keysInRange(fromKey, toKey);
+        if (!range.isEmpty()) {
+            redacted = true;
+            range.forEach(this::markChanged);
+            List<Record> removed = data.removeRange(fromKey, toKey);
+            repository.indexes.removeAll(removed);
+            changeSize(-removed.size());
         }
     }
 
@@ -252,41 +528,60 @@ public final class Cluster<Record> {
      * @return Deleted record or null, if string identifier not exists
      * @throws DeadLockException Current record lock from other transaction
      */
-    Record delete(final int key, final Object id, final Transaction transaction) {
+    Record delete(final long key, final Object id, final Transaction transaction) {
+        if (keepsChanges(transaction)) {
+            repository.repositoryLock.lock();
+            try {
+                lockRow(key, id, transaction);
+                if (!keepsKey(key)) {
+                    return repository.innerDelete(key, id, transaction).orElse(null);
+                }
+                Record record = findWithChanges(key, id, transaction);
+                putChange(key, id, null, transaction);
+                return record;
+            } finally {
+                repository.repositoryLock.unlock();
+            }
+        }
         lock(transaction);
         if(dropped) {
             return repository.innerDelete(key, id, transaction).orElse(null);
         }
 
-        if(copyDataForTransactions.containsKey(key)) {
-            Record record = copyDataForTransactions.get(key).remove(id);
-            if(copyDataForTransactions.get(key).isEmpty()) {
-                copyDataForTransactions.remove(key);
+        return withCopy(transaction, copy -> {
+            if(copy.containsKey(key)) {
+                Record record = copy.get(key).remove(id);
+                if (Objects.nonNull(record)) {
+                    copySize--;
+                }
+                if(copy.get(key).isEmpty()) {
+                    copy.remove(key);
+                }
+                return record;
+            } else {
+                return null;
             }
-            return record;
-        } else {
-            return null;
-        }
+        });
     }
 
     /**
      * @return Quantity record in this cluster
      */
     int size() {
-        return data.values().stream().mapToInt(Map::size).sum();
+        return size;
     }
 
     /**
      * @return Quantity record in this cluster in current transaction
      */
     int sizeWithTransaction() {
-        return Objects.isNull(copyDataForTransactions) ? size() : copyDataForTransactions.size();
+        return Objects.isNull(owner) ? size : copySize;
     }
 
     /**
      * @return The minimum identifier allowed for storage in this cluster
      */
-    int getFirstKey() {
+    long getFirstKey() {
         return firstKey;
     }
 
@@ -296,8 +591,8 @@ public final class Cluster<Record> {
      * @param key String identifier
      * @return True if cluster contains records with current string identifier
      */
-    boolean containsKey(final int key, final Object id) {
-        return data.containsKey(key) && data.get(key).containsKey(id);
+    boolean containsKey(final long key, final Object id) {
+        return Objects.nonNull(data.get(key, id));
     }
 
     /**
@@ -309,34 +604,36 @@ public final class Cluster<Record> {
 
     /**
      * Separates half of the records of the current cluster into a new cluster. Used for maximum cluster size limits.
+     * The cluster with records captured by transactions is not separated.
      *
      * @return New cluster, in which a part of the records of the current cluster was taken out
      */
     Optional<Cluster<Record>> split() {
-        if(data.size() != 1) {
-            Spliterator<Map.Entry<Integer, Map<Object, Record>>> spliterator = data.entrySet().spliterator();
-            Spliterator<Map.Entry<Integer, Map<Object, Record>>> currentClusterData = spliterator.trySplit();
-
-            data = StreamSupport.stream(currentClusterData, false)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (firstKey, secondKey) -> firstKey,
-                            TreeMap::new));
+        if(data.keyCount() > 1 && hasNotOpenTransactions()) {
+            Cluster<Record> newCluster = new Cluster<>(data.splitOff(), repository);
+            markAllChanged();
 
-            TreeMap<Integer, Map<Object, Record>> newClusterData = StreamSupport.stream(spliterator, false)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (firstKey, secondKey) -> firstKey,
-                            TreeMap::new));
-
-            return Optional.of(new Cluster<>(newClusterData.firstKey(), newClusterData, repository));
+            size -= newCluster.size;
+            return Optional.of(newCluster);
         } else
             return Optional.empty();
     }
 
+    /**
+     * @return Records of this cluster by hashes and ids in new maps
+     */
+    TreeMap<Long, Map<Object, Record>> getRecords() {
+        return data.toTreeMap();
+    }
+
     /**
      * Save to file data storage records from this cluster
      */
     void flush() {
         if (redacted) {
+            repository.invalidateClusterSizes();
             repository.clusterFileManipulator
-                    .write(new File(repository.directory.getAbsolutePath(), Integer.toString(firstKey)), data);
+                    .write(new File(repository.directory.getAbsolutePath(), Long.toString(firstKey)), getRecords());
             redacted = false;
         }
     }
@@ -345,20 +642,195 @@ public final class Cluster<Record> {
      * Checks for interaction with this cluster from other transactions.
      * If it exists, it waits for it to end and throws an error if the wait has exceeded the maximum allowed time.
      *
-     * @throws DeadLockException The maximum waiting time has been exceeded
+     * @throws LockTimeoutException The maximum waiting time has been exceeded
      */
     private void waitAndCheckDeadLock() {
-        if (Objects.nonNull(copyDataForTransactions)) {
-            try {
-                waitingTransactionCount++;
-                repository.wait(1000);
-                waitingTransactionCount--;
-            } catch (InterruptedException e) {
-                throw new InternalImnormException(e);
+        if (!awaitRelease(() -> Objects.nonNull(owner), TimeUnit.SECONDS.toNanos(1), () -> false, null))
+            throw new LockTimeoutException(firstKey);
+    }
+
+    /**
+     * Checks for interaction with this cluster or with specified record from other transactions.
+     * If it exists, it waits for it to end and throws an error if the wait has exceeded the maximum allowed time.
+     *
+     * @param key Hash of id of the record being changed
+     * @param id  ID of the record being changed
+     * @throws LockTimeoutException The maximum waiting time has been exceeded
+     */
+    private void waitAndCheckDeadLock(final long key, final Object id) {
+        if (!awaitRelease(() -> Objects.nonNull(owner) || Objects.nonNull(rowOwner(key, id)),
+                TimeUnit.SECONDS.toNanos(1), () -> false, null))
+            throw new LockTimeoutException(firstKey);
+    }
+
+    /**
+     * Checks for interaction with this cluster or with records inside the specified range from other transactions.
+     * If it exists, it waits for it to end and throws an error if the wait has exceeded the maximum allowed time.
+     *
+     * @param fromKey Lower bound of hashes of id of the records being changed, inclusive
+     * @param toKey   Upper bound of hashes of id of the records being changed, exclusive
+     * @throws LockTimeoutException The maximum waiting time has been exceeded
+     */
+    private void waitAndCheckDeadLockInRange(final long fromKey, final long toKey) {
+        if (!awaitRelease(() -> isBlockedFor(data.keysInRange(fromKey, toKey)),
+                TimeUnit.SECONDS.toNanos(1), () -> false, null))
+            throw new LockTimeoutException(firstKey);
+    }
+
+    /**
+     * Waits, while the resource is held by other transactions, but not longer than the waiting time of transaction.
+     * While waiting, transaction is registered in the graph of waiting, so a cycle of waiting transactions
+     * is detected at once and broken by aborting the youngest of them.
+     * Rollback transaction and throws an error if transaction was aborted or the wait has exceeded
+     * the maximum allowed time.
+     *
+     * @param transaction Waiting transaction
+     * @param blocked     Condition of blocking of the resource by other transactions
+     * @param holders     Transactions, holding the resource, which transaction tries to get
+     * @throws DeadLockException           Transaction was aborted to break a cycle of waiting
+     * @throws LockTimeoutException        The maximum waiting time has been exceeded
+     * @throws TransactionExpiredException Maximum duration of transaction expired while waiting
+     */
+    private void waitRelease(final Transaction transaction, final BooleanSupplier blocked,
+                             final Supplier<Set<Transaction>> holders) {
+        if (!blocked.getAsBoolean()) {
+            return;
+        }
+        boolean released;
+        boolean aborted;
+        try {
+            released = awaitRelease(blocked,
+                    TimeUnit.MILLISECONDS.toNanos(transaction.getWaitTime()),
+                    () -> transaction.waitFor(holders.get()),
+                    () -> transaction.holdersChanged(holders.get()));
+        } finally {
+            aborted = transaction.stopWaiting();
+        }
+        if (transaction.isExpired()) {
+            throw new TransactionExpiredException();
+        }
+        if (aborted) {
+            transaction.rollback();
+            throw new DeadLockException(firstKey);
+        }
+        if (!released) {
+            transaction.rollback();
+            throw new LockTimeoutException(firstKey);
+        }
+    }
+
+    /**
+     * @param transaction Transaction, which tries to capture this cluster
+     * @return Other transactions, which captured this cluster or its records
+     */
+    private Set<Transaction> holders(final Transaction transaction) {
+        Set<Transaction> holders = rowLocks.values().stream()
+                .flatMap(locks -> locks.values().stream())
+                .filter(rowOwner -> rowOwner != transaction)
+                .collect(Collectors.toSet());
+        if (Objects.nonNull(owner)) {
+            holders.add(owner);
+        }
+        return holders;
+    }
+
+    /**
+     * @param key Hash of id of the record
+     * @param id  ID of the record
+     * @return Transactions, which captured this cluster or specified record
+     */
+    private Set<Transaction> holders(final long key, final Object id) {
+        Set<Transaction> holders = new HashSet<>();
+        if (Objects.nonNull(owner)) {
+            holders.add(owner);
+        }
+        if (Objects.nonNull(rowOwner(key, id))) {
+            holders.add(rowOwner(key, id));
+        }
+        return holders;
+    }
+
+    /**
+     * Waits in the queue of this cluster, while the specified condition of blocking is true.
+     * Waiting thread is woken up only when the resource, which it waits for, is released,
+     * and waiters are woken up in order of arrival.
+     *
+     * @param blocked        Condition of blocking of the resource, which thread tries to get
+     * @param waitNanos      Max time of waiting in nanoseconds
+     * @param aborted        Condition of aborting of waiting, checked before every falling asleep
+     * @param holdersChanged Notification of waiting transaction about capture of the resource by other transaction.
+     *                       Null for waiting without transaction.
+     * @return True, if the resource was released before the waiting time expired and waiting was not aborted
+     * @throws InternalImnormException The thread was interrupted while waiting
+     */
+    private boolean awaitRelease(final BooleanSupplier blocked, final long waitNanos, final BooleanSupplier aborted,
+                                 final Runnable holdersChanged) {
+        if (!blocked.getAsBoolean()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        try {
+            if (!repository.repositoryLock.tryLock(waitNanos, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            if (aborted.getAsBoolean()) {
+                return false;
             }
-            if (Objects.nonNull(copyDataForTransactions))
-                throw new DeadLockException(firstKey);
+            throw new InternalImnormException(e);
         }
+        Waiter waiter = new Waiter(repository.repositoryLock.newCondition(), blocked, holdersChanged);
+        waiters.addLast(waiter);
+        try {
+            long remaining = deadline - System.nanoTime();
+            while (remaining > 0 && blocked.getAsBoolean() && !aborted.getAsBoolean()) {
+                remaining = waiter.released.awaitNanos(remaining);
+            }
+            return !blocked.getAsBoolean() && !aborted.getAsBoolean();
+        } catch (InterruptedException e) {
+            if (aborted.getAsBoolean()) {
+                return false;
+            }
+            throw new InternalImnormException(e);
+        } finally {
+            waiters.remove(waiter);
+            signalNextWaiter();
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up the earliest waiter, whose resource is free now.
+     * Waiter, which got the resource, wakes up the next one, so released records are handed over one by one.
+     */
+    private void signalNextWaiter() {
+        waiters.stream()
+                .filter(waiter -> !waiter.blocked.getAsBoolean())
+                .findFirst()
+                .ifPresent(waiter -> waiter.released.signal());
+    }
+
+    /**
+     * Notifies waiting threads about capture of this cluster or its record by a new transaction,
+     * so the graph of waiting does not keep transactions, which released the resource already.
+     * Otherwise a cycle through the new holder would stay unnoticed until the waiting time is exceeded.
+     */
+    private void notifyWaitersAboutCapture() {
+        waiters.stream()
+                .map(waiter -> waiter.holdersChanged)
+                .filter(Objects::nonNull)
+                .forEach(Runnable::run);
+    }
+
+    /**
+     * Captures this cluster by specified transaction in advance, before access to its records
+     *
+     * @param transaction Transaction, which captures this cluster
+     * @return False, if the cluster was dropped and its records should be searched in the repository again
+     */
+    boolean capture(final Transaction transaction) {
+        lock(transaction);
+        return !dropped;
     }
 
     /**
@@ -366,68 +838,430 @@ public final class Cluster<Record> {
      * If he does not own, checks for interaction with this cluster from other transactions.
      * If it not exists, transaction captures this cluster.
      * If it exists, it waits for it to end.
+     * Records, captured by current transaction earlier, are moved to the copy of cluster.
      * Rollback transaction and throws an error if the wait has exceeded the maximum allowed time.
      *
      * @param transaction A transaction that checks or tries to get a lock
      */
     private void lock(final Transaction transaction) {
-        synchronized (repository) {
-            if (!transaction.lockOwner(this)) {
-                if (Objects.nonNull(copyDataForTransactions)) {
-                    try {
-                        waitingTransactionCount++;
-                        long waitLimit = System.currentTimeMillis() + transaction.getWaitTime();
-                        while (System.currentTimeMillis() < waitLimit && Objects.nonNull(copyDataForTransactions)) {
-                            repository.wait(50);
+        repository.repositoryLock.lock();
+        try {
+            if (owner != transaction) {
+                waitRelease(transaction, () -> Objects.nonNull(owner) || rowLocks.values().stream()
+                        .anyMatch(locks -> locks.values().stream().anyMatch(rowOwner -> rowOwner != transaction)),
+                        () -> holders(transaction));
+                transaction.captureLock(this);
+                copyDataForTransactions = data.toTreeMap();
+                copySize = size + applyChanges(copyDataForTransactions, transactionChanges.remove(transaction));
+                rowLocks.clear();
+                owner = transaction;
+                notifyWaitersAboutCapture();
+            }
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the current transaction owns specified record.
+     * If he does not own, waits for the release of this record and this cluster by other transactions
+     * and captures the record. Optimistic transaction only registers this cluster without capturing.
+     * Rollback transaction and throws an error if the wait has exceeded the maximum allowed time.
+     *
+     * @param key         Hash of id of the captured record
+     * @param id          ID of the captured record
+     * @param transaction A transaction that checks or tries to get a lock
+     */
+    private void lockRow(final long key, final Object id, final Transaction transaction) {
+        repository.repositoryLock.lock();
+        try {
+            if (transaction.isOptimistic()) {
+                transaction.captureLock(this);
+                optimisticReaders.add(transaction);
+                transaction.rememberRead(this, key, versionOf(key));
+            } else if (rowOwner(key, id) != transaction) {
+                waitRelease(transaction, () -> Objects.nonNull(owner) || Objects.nonNull(rowOwner(key, id)),
+                        () -> holders(key, id));
+                transaction.captureLock(this);
+                rowLocks.computeIfAbsent(key, hash -> new HashMap<>()).put(id, transaction);
+                notifyWaitersAboutCapture();
+            }
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Checks, that this cluster still keeps records with specified hash of id. The cluster can be split or dropped,
+     * while the lock of repository is released during waiting for records. Should be called under the lock of repository.
+     *
+     * @param key Hash of id of the record
+     * @return True, if this cluster is current for specified hash of id
+     */
+    private boolean keepsKey(final long key) {
+        return !dropped && repository.findCurrentClusterFromId(key).orElse(null) == this;
+    }
+
+    /**
+     * @param key Hash of id of the record
+     * @param id  ID of the record
+     * @return Row-locking transaction, which captured specified record, or null, if record is free
+     */
+    private Transaction rowOwner(final long key, final Object id) {
+        Map<Object, Transaction> locks = rowLocks.get(key);
+        return Objects.isNull(locks) ? null : locks.get(id);
+    }
+
+    /**
+     * @param transaction Transaction, which accesses to this cluster
+     * @return True, if transaction works with separate records of this cluster and keeps its changes apart
+     */
+    private boolean keepsChanges(final Transaction transaction) {
+        return (transaction.isRowLocking() || transaction.isOptimistic()) && owner != transaction;
+    }
+
+    /**
+     * Remember change of record, made by row-locking transaction
+     *
+     * @param key         Hash of id of the changed record
+     * @param id          ID of the changed record
+     * @param record      New value of record or null, if record was deleted
+     * @param transaction Transaction, which changed the record
+     */
+    private void putChange(final long key, final Object id, final Record record, final Transaction transaction) {
+        transactionChanges.computeIfAbsent(transaction, t -> new TreeMap<>())
+                .computeIfAbsent(key, hash -> new HashMap<>())
+                .put(id, record);
+    }
+
+    /**
+     * Find record with taking into account changes, made by row-locking transaction
+     *
+     * @param key         Hash of id of the record
+     * @param id          ID of the record
+     * @param transaction Transaction, in which execute find
+     * @return Found record or null, if record not exists in current transaction
+     */
+    private Record findWithChanges(final long key, final Object id, final Transaction transaction) {
+        TreeMap<Long, Map<Object, Record>> changes = transactionChanges.get(transaction);
+        if (Objects.nonNull(changes) && changes.containsKey(key) && changes.get(key).containsKey(id)) {
+            return changes.get(key).get(id);
+        }
+        return data.get(key, id);
+    }
+
+    /**
+     * Write changes of records to specified data
+     *
+     * @param target  Records, to which changes are applied
+     * @param changes Changes of records, where null value means deleting of record
+     * @return Change of quantity of records in target
+     */
+    private int applyChanges(final TreeMap<Long, Map<Object, Record>> target,
+                             final TreeMap<Long, Map<Object, Record>> changes) {
+        int delta = 0;
+        if (Objects.nonNull(changes)) {
+            for (Map.Entry<Long, Map<Object, Record>> records : changes.entrySet()) {
+                long key = records.getKey();
+                for (Map.Entry<Object, Record> change : records.getValue().entrySet()) {
+                    if (Objects.isNull(change.getValue())) {
+                        Map<Object, Record> current = target.get(key);
+                        if (Objects.nonNull(current) && Objects.nonNull(current.remove(change.getKey()))) {
+                            delta--;
+                            if (current.isEmpty()) {
+                                target.remove(key);
+                            }
                         }
-                        waitingTransactionCount--;
-                    } catch (InterruptedException e) {
-                        throw new InternalImnormException(e);
-                    }
-                    if (Objects.nonNull(copyDataForTransactions)) {
-                        transaction.rollback();
-                        throw new DeadLockException(firstKey);
+                    } else if (Objects.isNull(target.computeIfAbsent(key, hash -> new HashMap<>())
+                            .put(change.getKey(), change.getValue()))) {
+                        delta++;
                     }
                 }
-                copyDataForTransactions = new TreeMap<>();
-                for(var dataEntry: data.entrySet()) {
-                    copyDataForTransactions.put(dataEntry.getKey(), new HashMap<>(dataEntry.getValue()));
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Write changes of records to basic data and update indexes of fields
+     *
+     * @param changes Changes of records, where null value means deleting of record
+     * @return Change of quantity of records in basic data
+     */
+    private int applyChanges(final Map<Long, Map<Object, Record>> changes) {
+        int delta = 0;
+        for (Map.Entry<Long, Map<Object, Record>> records : changes.entrySet()) {
+            for (Map.Entry<Object, Record> change : records.getValue().entrySet()) {
+                if (Objects.isNull(change.getValue())) {
+                    Record removed = data.remove(records.getKey(), change.getKey());
+                    if (Objects.nonNull(removed)) {
+                        repository.indexes.remove(removed);
+                        delta--;
+                    }
+                } else {
+                    Record previous = data.put(records.getKey(), change.getKey(), change.getValue());
+                    repository.indexes.replace(previous, change.getValue());
+                    if (Objects.isNull(previous)) {
+                        delta++;
+                    }
                 }
-                transaction.captureLock(this);
             }
         }
+        return delta;
+    }
+
+    /**
+     * Changes quantity of records of this cluster and its repository
+     *
+     * @param delta Change of quantity of records
+     */
+    private void changeSize(final int delta) {
+        size += delta;
+        repository.addToSize(delta);
+    }
+
+    /**
+     * @param records  Records by hashes and ids
+     * @param <Record> Type of data entity
+     * @return Quantity of records
+     */
+    static <Record> int countRecords(final Map<Long, Map<Object, Record>> records) {
+        int quantity = 0;
+        for (Map<Object, Record> values : records.values()) {
+            quantity += values.size();
+        }
+        return quantity;
     }
 
     /**
      * Saving changes made in a transaction and subsequent checking of the cluster for emptiness or overcrowding
+     *
+     * @param transaction Committed transaction
+     * @return New cluster, which was split off from this cluster after commit
      */
-    void commit() {
-        synchronized (repository) {
-            data = copyDataForTransactions;
-            copyDataForTransactions = null;
-            redacted = true;
-            if (waitingTransactionCount == 0) {
-                repository.splitClusterIfNeed(this);
+    Optional<Cluster<Record>> commit(final Transaction transaction) {
+        repository.repositoryLock.lock();
+        try {
+            if (owner == transaction) {
+                CompactRecords<Record> committed = new CompactRecords<>(repository, copy());
+                if (repository.indexes.isEnabled()) {
+                    repository.indexes.removeAll(data.records());
+                    repository.indexes.addAll(committed.records());
+                }
+                data = committed;
+                changeSize(copySize - size);
+                copyDataForTransactions = null;
+                owner = null;
+                redacted = true;
+                markAllChanged();
+            } else {
+                TreeMap<Long, Map<Object, Record>> changes = transactionChanges.remove(transaction);
+                if (Objects.nonNull(changes)) {
+                    changeSize(applyChanges(changes));
+                    changes.keySet().forEach(this::markChanged);
+                    redacted = true;
+                }
+                releaseRows(transaction);
+            }
+            Optional<Cluster<Record>> newCluster = Optional.empty();
+            if (waiters.isEmpty() && hasNotOpenTransactions()) {
+                newCluster = repository.splitClusterIfNeed(this);
                 repository.deleteClusterIfNeed(this);
             }
-            repository.notifyAll();
+            signalNextWaiter();
+            return newCluster;
+        } finally {
+            repository.repositoryLock.unlock();
         }
     }
 
     /**
      * Canceling changes made in a transaction
+     *
+     * @param transaction Cancelled transaction
      */
-    void rollback() {
-        synchronized (repository) {
+    void rollback(final Transaction transaction) {
+        repository.repositoryLock.lock();
+        try {
+            if (owner == transaction) {
+                copyDataForTransactions = null;
+                deleteSpilledCopy();
+                owner = null;
+            } else {
+                transactionChanges.remove(transaction);
+                releaseRows(transaction);
+            }
+            signalNextWaiter();
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the copy of records for transactional call to temporary file and frees RAM, occupied by the copy.
+     * The copy is read back on the next access of owner transaction to this cluster or on commit.
+     *
+     * @return True, if the copy was in RAM and was spilled
+     */
+    boolean spill() {
+        repository.repositoryLock.lock();
+        try {
+            if (Objects.isNull(copyDataForTransactions)) {
+                return false;
+            }
+            spilledCopy = File.createTempFile("imnorm-spilled-", ".tmp");
+            repository.clusterFileManipulator.write(spilledCopy, copyDataForTransactions);
             copyDataForTransactions = null;
-            repository.notifyAll();
+            return true;
+        } catch (IOException e) {
+            throw new InternalImnormException(e);
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Performs operation with the copy of records for transactional call under the lock of repository,
+     * because the copy can be spilled to file by other thread at any time.
+     * The cluster can also be released by expiration of transaction after it was captured,
+     * so the owner is checked under the same lock.
+     *
+     * @param transaction Transaction, which captured this cluster
+     * @param operation   Operation with the copy
+     * @param <Result>    Type of result of operation
+     * @return Result of operation
+     * @throws TransactionWasClosedException The cluster was released, because transaction was closed or expired
+     */
+    private <Result> Result withCopy(final Transaction transaction,
+                                     final Function<TreeMap<Long, Map<Object, Record>>, Result> operation) {
+        repository.repositoryLock.lock();
+        try {
+            if (owner != transaction) {
+                throw transaction.closedException();
+            }
+            return operation.apply(copy());
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * @return Copy of records for transactional call, read from temporary file, if it was spilled
+     */
+    private TreeMap<Long, Map<Object, Record>> copy() {
+        if (Objects.nonNull(spilledCopy)) {
+            copyDataForTransactions = repository.clusterFileManipulator.read(spilledCopy.toPath());
+            deleteSpilledCopy();
         }
+        return copyDataForTransactions;
+    }
+
+    /**
+     * Deletes temporary file with spilled copy of records for transactional call, if it exists
+     */
+    private void deleteSpilledCopy() {
+        if (Objects.nonNull(spilledCopy)) {
+            try {
+                Files.delete(spilledCopy.toPath());
+            } catch (IOException e) {
+                throw new InternalImnormException(e);
+            }
+            spilledCopy = null;
+        }
+    }
+
+    /**
+     * Release all records, captured or read by specified transaction
+     *
+     * @param transaction Transaction-owner of records
+     */
+    private void releaseRows(final Transaction transaction) {
+        rowLocks.values().forEach(locks -> locks.values().removeIf(rowOwner -> rowOwner == transaction));
+        rowLocks.values().removeIf(Map::isEmpty);
+        optimisticReaders.remove(transaction);
+    }
+
+    /**
+     * Checks, that records, read and changed by optimistic transaction, were not changed by other transactions
+     * and are not captured by them now
+     *
+     * @param transaction Validated optimistic transaction
+     * @return True, if changes of transaction can be applied
+     */
+    boolean validate(final Transaction transaction) {
+        if (dropped || Objects.nonNull(owner) && owner != transaction) {
+            return false;
+        }
+        TreeMap<Long, Map<Object, Record>> changes = transactionChanges.getOrDefault(transaction, new TreeMap<>());
+        for (var change : changes.entrySet()) {
+            for (Object id : change.getValue().keySet()) {
+                if (Objects.nonNull(rowOwner(change.getKey(), id))) {
+                    return false;
+                }
+            }
+        }
+        return transaction.getReadVersions(this).entrySet().stream()
+                .allMatch(read -> versionOf(read.getKey()) == read.getValue())
+                && transaction.getScanVersion(this).map(scanVersion -> scanVersion == version).orElse(true);
+    }
+
+    /**
+     * @param key Hash of id of the record
+     * @return Version of the last change of records with specified hash of id
+     */
+    private long versionOf(final long key) {
+        return rowVersions.getOrDefault(key, baseVersion);
+    }
+
+    /**
+     * Registers change of records with specified hash of id
+     *
+     * @param key Hash of id of the changed record
+     */
+    private void markChanged(final long key) {
+        version = versionSequence.incrementAndGet();
+        if (Transaction.hasOpenOptimisticTransactions()) {
+            rowVersions.put(key, version);
+        } else if (!rowVersions.isEmpty()) {
+            rowVersions.clear();
+            baseVersion = version;
+        }
+    }
+
+    /**
+     * Registers change of all records of this cluster
+     */
+    private void markAllChanged() {
+        version = versionSequence.incrementAndGet();
+        baseVersion = version;
+        rowVersions.clear();
     }
 
     /**
      * @return True, if cluster contains open transaction
      */
     boolean hasNotOpenTransactions() {
-        return Objects.isNull(copyDataForTransactions);
+        return Objects.isNull(owner) && rowLocks.isEmpty() && transactionChanges.isEmpty() && optimisticReaders.isEmpty();
+    }
+
+    /**
+     * Thread, waiting for release of resource of cluster
+     */
+    @AllArgsConstructor
+    private static final class Waiter {
+        /**
+         * Condition, on which thread waits
+         */
+        private final Condition released;
+
+        /**
+         * Condition of blocking of the resource, which thread waits for
+         */
+        private final BooleanSupplier blocked;
+
+        /**
+         * Notification about capture of the resource by other transaction. Null for waiting without transaction.
+         */
+        private final Runnable holdersChanged;
     }
 }
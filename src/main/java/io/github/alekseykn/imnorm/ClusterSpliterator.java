@@ -0,0 +1,145 @@
+package io.github.alekseykn.imnorm;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator of records of repository, which walks clusters in ascending order of their first keys.
+ * The next cluster is read only when records of the current one were traversed.
+ * Spliterator is split on the boundary of clusters.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+final class ClusterSpliterator<Record> implements Spliterator<Record> {
+    /**
+     * Repository, which records are traversed
+     */
+    private final Repository<Record> repository;
+
+    /**
+     * Lower bound of first keys of traversed clusters, inclusive, or null, if the range is not bounded below
+     */
+    private Long fromKey;
+
+    /**
+     * Upper bound of first keys of traversed clusters, exclusive, or null, if the range is not bounded above
+     */
+    private final Long toKey;
+
+    /**
+     * First key of the last read cluster, or null, if no cluster was read
+     */
+    private Long lastKey;
+
+    /**
+     * Not traversed records of the last read cluster
+     */
+    private Iterator<Record> records = Collections.emptyIterator();
+
+    /**
+     * @param repository Repository, which records are traversed
+     */
+    ClusterSpliterator(final Repository<Record> repository) {
+        this(repository, null, null, null);
+    }
+
+    /**
+     * @param repository Repository, which records are traversed
+     * @param fromKey    Lower bound of first keys of traversed clusters, inclusive. It is greater than
+     *                   {@link Long#MIN_VALUE}, because it is a key of cluster, which follows other cluster.
+     * @param lastKey    First key of the last read cluster
+     * @param toKey      Upper bound of first keys of traversed clusters, exclusive
+     */
+    private ClusterSpliterator(final Repository<Record> repository, final Long fromKey, final Long lastKey,
+                               final Long toKey) {
+        this.repository = repository;
+        this.fromKey = fromKey;
+        this.lastKey = lastKey;
+        this.toKey = toKey;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Record> action) {
+        while (!records.hasNext()) {
+            Optional<Long> nextKey = nextClusterKey();
+            if (nextKey.isEmpty()) {
+                return false;
+            }
+            lastKey = nextKey.get();
+            records = repository.findAllInCluster(lastKey).iterator();
+        }
+        action.accept(records.next());
+        return true;
+    }
+
+    /**
+     * Splits off the first half of not read clusters. Spliterator is not split inside a cluster.
+     *
+     * @return Spliterator of the first half of not read clusters, or null, if less than two clusters remain
+     */
+    @Override
+    public Spliterator<Record> trySplit() {
+        if (records.hasNext()) {
+            return null;
+        }
+        NavigableSet<Long> keys = remainingClusterKeys();
+        if (keys.size() < 2) {
+            return null;
+        }
+        long middleKey = keys.stream().skip(keys.size() / 2).findFirst().orElseThrow();
+        ClusterSpliterator<Record> prefix = new ClusterSpliterator<>(repository, fromKey, lastKey, middleKey);
+        fromKey = middleKey;
+        lastKey = null;
+        return prefix;
+    }
+
+    /**
+     * @return Quantity of not read clusters
+     */
+    @Override
+    public long estimateSize() {
+        return remainingClusterKeys().size() + (records.hasNext() ? 1 : 0);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Releases records of the last read cluster and stops traversal
+     */
+    void close() {
+        records = Collections.emptyIterator();
+        lastKey = Objects.isNull(toKey) ? Long.MAX_VALUE : toKey;
+    }
+
+    /**
+     * @return First key of the next cluster inside the range of this spliterator
+     */
+    private Optional<Long> nextClusterKey() {
+        if (Objects.nonNull(lastKey)) {
+            return lastKey == Long.MAX_VALUE
+                    ? Optional.empty()
+                    : repository.findNextClusterKey(lastKey).filter(key -> Objects.isNull(toKey) || key < toKey);
+        }
+        return repository.findNextClusterKey(Objects.isNull(fromKey) ? null : fromKey - 1)
+                .filter(key -> Objects.isNull(toKey) || key < toKey);
+    }
+
+    /**
+     * @return First keys of not read clusters inside the range of this spliterator.
+     * Cluster with key {@link Long#MAX_VALUE} is not included.
+     */
+    private NavigableSet<Long> remainingClusterKeys() {
+        long lower = Objects.nonNull(lastKey) ? (lastKey == Long.MAX_VALUE ? lastKey : lastKey + 1)
+                : Objects.nonNull(fromKey) ? fromKey : Long.MIN_VALUE;
+        return repository.findClusterKeys(lower, Objects.isNull(toKey) ? Long.MAX_VALUE : toKey);
+    }
+}
@@ -0,0 +1,409 @@
+package io.github.alekseykn.imnorm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compact storage of records of cluster. Hashes of id are kept in the sorted array of primitives
+ * with the parallel array of records, so records are searched by binary search without boxing of hashes.
+ * Records with the same hash are chained in a map only where hashes actually repeat,
+ * otherwise id of record is taken from the record itself.
+ * Changes are made under the lock of repository, but records are read without it,
+ * so arrays are never shifted in place: every insert or delete of hashes publishes new arrays as a whole,
+ * and chains are replaced instead of being changed. Readers take the arrays once and see them consistent.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+final class CompactRecords<Record> {
+    /**
+     * Empty arrays of hashes and records
+     */
+    private static final Snapshot EMPTY = new Snapshot(new long[0], new Object[0]);
+
+    /**
+     * Repository, which takes id from records
+     */
+    private final Repository<Record> repository;
+
+    /**
+     * Hashes of id in ascending order with record or chain of records for every hash
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Create empty storage
+     *
+     * @param repository Repository, which takes id from records
+     */
+    CompactRecords(final Repository<Record> repository) {
+        this(repository, EMPTY);
+    }
+
+    /**
+     * Create storage with current records
+     *
+     * @param repository Repository, which takes id from records
+     * @param records    Records by hashes and ids
+     */
+    CompactRecords(final Repository<Record> repository, final SortedMap<Long, Map<Object, Record>> records) {
+        this.repository = repository;
+        int length = (int) records.values().stream().filter(byId -> !byId.isEmpty()).count();
+        long[] keys = new long[length];
+        Object[] values = new Object[length];
+        int index = 0;
+        for (Map.Entry<Long, Map<Object, Record>> byId : records.entrySet()) {
+            if (!byId.getValue().isEmpty()) {
+                keys[index] = byId.getKey();
+                values[index++] = byId.getValue().size() == 1
+                        ? byId.getValue().values().iterator().next()
+                        : new Chain<>(new HashMap<>(byId.getValue()));
+            }
+        }
+        snapshot = new Snapshot(keys, values);
+    }
+
+    /**
+     * @param repository Repository, which takes id from records
+     * @param snapshot   Hashes of id with records
+     */
+    private CompactRecords(final Repository<Record> repository, final Snapshot snapshot) {
+        this.repository = repository;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Find record on hash and id
+     *
+     * @param key Hash of id
+     * @param id  ID of record
+     * @return Found record or null, if record not exists
+     */
+    Record get(final long key, final Object id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, key);
+        return index < 0 ? null : find(current.values[index], id);
+    }
+
+    /**
+     * Add or update record
+     *
+     * @param key    Hash of id
+     * @param id     ID of record
+     * @param record Record, which will be put
+     * @return Previous record with the same id or null, if it did not exist
+     */
+    @SuppressWarnings("unchecked")
+    Record put(final long key, final Object id, final Record record) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, key);
+        if (index < 0) {
+            insert(current, -index - 1, key, record);
+            return null;
+        }
+        if (current.values[index] instanceof Chain) {
+            Map<Object, Record> chain = new HashMap<>(((Chain<Record>) current.values[index]).records);
+            Record previous = chain.put(id, record);
+            current.values[index] = new Chain<>(chain);
+            return previous;
+        }
+        Record previous = (Record) current.values[index];
+        Object currentId = repository.getOriginalIdFromRecord(previous);
+        if (id.equals(currentId)) {
+            current.values[index] = record;
+            return previous;
+        }
+        Map<Object, Record> chain = new HashMap<>(4);
+        chain.put(currentId, previous);
+        chain.put(id, record);
+        current.values[index] = new Chain<>(chain);
+        return null;
+    }
+
+    /**
+     * Delete record on hash and id
+     *
+     * @param key Hash of id
+     * @param id  ID of record
+     * @return Deleted record or null, if record not exists
+     */
+    @SuppressWarnings("unchecked")
+    Record remove(final long key, final Object id) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, key);
+        if (index < 0) {
+            return null;
+        }
+        if (current.values[index] instanceof Chain) {
+            Map<Object, Record> chain = new HashMap<>(((Chain<Record>) current.values[index]).records);
+            Record record = chain.remove(id);
+            current.values[index] = chain.size() == 1 ? chain.values().iterator().next() : new Chain<>(chain);
+            return record;
+        }
+        Record record = (Record) current.values[index];
+        if (!id.equals(repository.getOriginalIdFromRecord(record))) {
+            return null;
+        }
+        delete(current, index, index + 1);
+        return record;
+    }
+
+    /**
+     * Delete records with hashes of id inside the specified range
+     *
+     * @param fromKey Lower bound of hashes of id, inclusive
+     * @param toKey   Upper bound of hashes of id, exclusive
+     * @return Deleted records
+     */
+    List<Record> removeRange(final long fromKey, final long toKey) {
+        Snapshot current = snapshot;
+        int from = lowerBound(current, fromKey);
+        int to = lowerBound(current, toKey);
+        List<Record> removed = new ArrayList<>(to - from);
+        for (int index = from; index < to; index++) {
+            addTo(removed, current.values[index]);
+        }
+        if (from < to) {
+            delete(current, from, to);
+        }
+        return removed;
+    }
+
+    /**
+     * @return All records in ascending order of hashes of id
+     */
+    List<Record> records() {
+        Snapshot current = snapshot;
+        List<Record> records = new ArrayList<>(current.keys.length);
+        for (Object value : current.values) {
+            addTo(records, value);
+        }
+        return records;
+    }
+
+    /**
+     * @param fromKey Lower bound of hashes of id, inclusive
+     * @return Lists of records by hashes in ascending order, which are not less than the specified one
+     */
+    NavigableMap<Long, List<Record>> groupFrom(final long fromKey) {
+        Snapshot current = snapshot;
+        NavigableMap<Long, List<Record>> result = new TreeMap<>();
+        for (int index = lowerBound(current, fromKey); index < current.keys.length; index++) {
+            List<Record> records = new ArrayList<>(1);
+            addTo(records, current.values[index]);
+            result.put(current.keys[index], records);
+        }
+        return result;
+    }
+
+    /**
+     * @param fromKey Lower bound of hashes of id, inclusive
+     * @param toKey   Upper bound of hashes of id, exclusive
+     * @return Hashes of id of records inside the specified range
+     */
+    Set<Long> keysInRange(final long fromKey, final long toKey) {
+        Snapshot current = snapshot;
+        Set<Long> result = new HashSet<>();
+        for (int index = lowerBound(current, fromKey), to = lowerBound(current, toKey); index < to; index++) {
+            result.add(current.keys[index]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Records by hashes and ids in new mutable maps
+     */
+    @SuppressWarnings("unchecked")
+    TreeMap<Long, Map<Object, Record>> toTreeMap() {
+        Snapshot current = snapshot;
+        TreeMap<Long, Map<Object, Record>> result = new TreeMap<>();
+        for (int index = 0; index < current.keys.length; index++) {
+            Object value = current.values[index];
+            Map<Object, Record> byId;
+            if (value instanceof Chain) {
+                byId = new HashMap<>(((Chain<Record>) value).records);
+            } else {
+                byId = new HashMap<>();
+                byId.put(repository.getOriginalIdFromRecord((Record) value), (Record) value);
+            }
+            result.put(current.keys[index], byId);
+        }
+        return result;
+    }
+
+    /**
+     * Separates the second half of hashes of id with their records into a new storage
+     *
+     * @return New storage with the greater hashes of id
+     */
+    CompactRecords<Record> splitOff() {
+        Snapshot current = snapshot;
+        int length = current.keys.length;
+        int middle = length / 2;
+        CompactRecords<Record> separated = new CompactRecords<>(repository, new Snapshot(
+                Arrays.copyOfRange(current.keys, middle, length), Arrays.copyOfRange(current.values, middle, length)));
+        snapshot = new Snapshot(Arrays.copyOf(current.keys, middle), Arrays.copyOf(current.values, middle));
+        return separated;
+    }
+
+    /**
+     * @return The least hash of id
+     */
+    long firstKey() {
+        return snapshot.keys[0];
+    }
+
+    /**
+     * @return Quantity of different hashes of id
+     */
+    int keyCount() {
+        return snapshot.keys.length;
+    }
+
+    /**
+     * @return Quantity of records
+     */
+    int countRecords() {
+        int quantity = 0;
+        for (Object value : snapshot.values) {
+            quantity += quantityOf(value);
+        }
+        return quantity;
+    }
+
+    /**
+     * @return True, if storage not contains records
+     */
+    boolean isEmpty() {
+        return snapshot.keys.length == 0;
+    }
+
+    /**
+     * @param current Hashes of id with records
+     * @param key     Hash of id
+     * @return Index of the first hash, which is not less than the specified one
+     */
+    private static int lowerBound(final Snapshot current, final long key) {
+        int index = Arrays.binarySearch(current.keys, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * @param value Record or chain of records
+     * @param id    ID of record
+     * @return Record with specified id or null, if it not exists
+     */
+    @SuppressWarnings("unchecked")
+    private Record find(final Object value, final Object id) {
+        if (value instanceof Chain) {
+            return ((Chain<Record>) value).records.get(id);
+        }
+        return id.equals(repository.getOriginalIdFromRecord((Record) value)) ? (Record) value : null;
+    }
+
+    /**
+     * @param target Collection, to which records are added
+     * @param value  Record or chain of records
+     */
+    @SuppressWarnings("unchecked")
+    private void addTo(final Collection<Record> target, final Object value) {
+        if (value instanceof Chain) {
+            target.addAll(((Chain<Record>) value).records.values());
+        } else {
+            target.add((Record) value);
+        }
+    }
+
+    /**
+     * @param value Record or chain of records
+     * @return Quantity of records
+     */
+    private int quantityOf(final Object value) {
+        return value instanceof Chain ? ((Chain<?>) value).records.size() : 1;
+    }
+
+    /**
+     * Publishes new arrays with hash and record inserted into the specified position
+     *
+     * @param current Hashes of id with records
+     * @param index   Position of inserted hash
+     * @param key     Hash of id
+     * @param record  Inserted record
+     */
+    private void insert(final Snapshot current, final int index, final long key, final Record record) {
+        int length = current.keys.length;
+        long[] keys = new long[length + 1];
+        Object[] values = new Object[length + 1];
+        System.arraycopy(current.keys, 0, keys, 0, index);
+        System.arraycopy(current.values, 0, values, 0, index);
+        keys[index] = key;
+        values[index] = record;
+        System.arraycopy(current.keys, index, keys, index + 1, length - index);
+        System.arraycopy(current.values, index, values, index + 1, length - index);
+        snapshot = new Snapshot(keys, values);
+    }
+
+    /**
+     * Publishes new arrays without hashes and records in the specified range of positions
+     *
+     * @param current Hashes of id with records
+     * @param from    First deleted position, inclusive
+     * @param to      Last deleted position, exclusive
+     */
+    private void delete(final Snapshot current, final int from, final int to) {
+        int length = current.keys.length;
+        long[] keys = new long[length - (to - from)];
+        Object[] values = new Object[keys.length];
+        System.arraycopy(current.keys, 0, keys, 0, from);
+        System.arraycopy(current.values, 0, values, 0, from);
+        System.arraycopy(current.keys, to, keys, from, length - to);
+        System.arraycopy(current.values, to, values, from, length - to);
+        snapshot = new Snapshot(keys, values);
+    }
+
+    /**
+     * Hashes of id in ascending order with record or chain of records for every hash.
+     * The hashes are never changed after publishing, only records of the same hashes are replaced
+     */
+    private static final class Snapshot {
+        /**
+         * Hashes of id in ascending order
+         */
+        private final long[] keys;
+
+        /**
+         * Record or chain of records for every hash of id
+         */
+        private final Object[] values;
+
+        private Snapshot(final long[] keys, final Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Records with the same hash of id
+     *
+     * @param <Record> Type of data entity
+     */
+    private static final class Chain<Record> {
+        /**
+         * Records by id
+         */
+        private final Map<Object, Record> records;
+
+        private Chain(final Map<Object, Record> records) {
+            this.records = records;
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 
 /**
@@ -27,13 +30,18 @@ public class DataStorage {
      */
     private static final Map<Path, DataStorage> createdDataStorage = new HashMap<>();
 
+    /**
+     * Lock, guarding collection instances of DataStorage
+     */
+    private static final ReentrantLock storagesLock = new ReentrantLock();
+
 
     /**
      * Create instances of DataStorage with standard path
      *
      * @return Instances of DataStorage with standard path
      */
-    public synchronized static DataStorage getDataStorage() {
+    public static DataStorage getDataStorage() {
         return getDataStorage(Path.of("data"));
     }
 
@@ -43,18 +51,23 @@ public class DataStorage {
      * @param path The path where the data storage will be located
      * @return Instances of DataStorage with specified path
      */
-    public synchronized static DataStorage getDataStorage(Path path) {
-        path = path.toAbsolutePath();
-        File rootDataStorageDirectory = path.toFile();
-        if (!rootDataStorageDirectory.exists()) {
-            if (!rootDataStorageDirectory.mkdirs())
-                throw new CreateDataStorageException(rootDataStorageDirectory);
-        }
+    public static DataStorage getDataStorage(Path path) {
+        storagesLock.lock();
+        try {
+            path = path.toAbsolutePath();
+            File rootDataStorageDirectory = path.toFile();
+            if (!rootDataStorageDirectory.exists()) {
+                if (!rootDataStorageDirectory.mkdirs())
+                    throw new CreateDataStorageException(rootDataStorageDirectory);
+            }
 
-        if (!createdDataStorage.containsKey(path)) {
-            createdDataStorage.put(path, new DataStorage(path));
+            if (!createdDataStorage.containsKey(path)) {
+                createdDataStorage.put(path, new DataStorage(path));
+            }
+            return createdDataStorage.get(path);
+        } finally {
+            storagesLock.unlock();
         }
-        return createdDataStorage.get(path);
     }
 
     /**
@@ -72,6 +85,11 @@ public class DataStorage {
      */
     private final Map<Class<?>, Repository<?>> createdRepository = new HashMap<>();
 
+    /**
+     * Lock, guarding collection repository of current data storage
+     */
+    private final ReentrantLock repositoriesLock = new ReentrantLock();
+
     private DataStorage(Path path) {
         nowPath = path;
         executedMigrations = new File(path.toFile(), "executed_migrations.imnorm");
@@ -85,11 +103,16 @@ public class DataStorage {
      * @param <Value> Type of entity
      * @return Repository for work with current entity
      */
-    public synchronized <Value> Repository<Value> getPreferablyFastRepositoryForClass(Class<Value> clas) {
-        if (!createdRepository.containsKey(clas)) {
-            createdRepository.put(clas, new FastRepository<>(clas, directoryForRepository(clas)));
+    public <Value> Repository<Value> getPreferablyFastRepositoryForClass(Class<Value> clas) {
+        repositoriesLock.lock();
+        try {
+            if (!createdRepository.containsKey(clas)) {
+                createdRepository.put(clas, new FastRepository<>(clas, directoryForRepository(clas)));
+            }
+            return (Repository<Value>) createdRepository.get(clas);
+        } finally {
+            repositoriesLock.unlock();
         }
-        return (Repository<Value>) createdRepository.get(clas);
     }
 
     /**
@@ -100,12 +123,35 @@ public class DataStorage {
      * @param <Value> Type of entity
      * @return Repository for work with current entity
      */
-    public synchronized <Value> Repository<Value> getPreferablyFrugalRepositoryForClass(Class<Value> clas, int repositoryMaxMegabyteSize) {
-        if (!createdRepository.containsKey(clas)) {
-            createdRepository.put(clas, new FrugalRepository<>(clas, directoryForRepository(clas),
-                    repositoryMaxMegabyteSize * 100));
+    public <Value> Repository<Value> getPreferablyFrugalRepositoryForClass(Class<Value> clas, int repositoryMaxMegabyteSize) {
+        return getPreferablyFrugalRepositoryForClass(clas, repositoryMaxMegabyteSize, 0);
+    }
+
+    /**
+     * Create frugal repository or return exists, if it was created earlier.
+     * If exists repository have other type, return repository other type instead of the requested.
+     * Clusters, dropped from RAM, are kept compressed outside the heap within the separate limit,
+     * which is not included into the limit of repository, and are read from file system only after that.
+     *
+     * @param clas                      Class of entity
+     * @param repositoryMaxMegabyteSize Max size of repository in RAM in megabytes
+     * @param offHeapMaxMegabyteSize    Max size of compressed clusters outside the heap in megabytes.
+     *                                  Zero disables keeping of clusters outside the heap.
+     * @param <Value>                   Type of entity
+     * @return Repository for work with current entity
+     */
+    public <Value> Repository<Value> getPreferablyFrugalRepositoryForClass(Class<Value> clas, int repositoryMaxMegabyteSize,
+                                                                          int offHeapMaxMegabyteSize) {
+        repositoriesLock.lock();
+        try {
+            if (!createdRepository.containsKey(clas)) {
+                createdRepository.put(clas, new FrugalRepository<>(clas, directoryForRepository(clas),
+                        repositoryMaxMegabyteSize * 100, offHeapMaxMegabyteSize * 1024L * 1024));
+            }
+            return (Repository<Value>) createdRepository.get(clas);
+        } finally {
+            repositoriesLock.unlock();
         }
-        return (Repository<Value>) createdRepository.get(clas);
     }
 
     /**
@@ -117,19 +163,24 @@ public class DataStorage {
      * @param <Value> Type of entity
      * @return Repository for work with current entity
      */
-    public synchronized <Value> Repository<Value> getStrictlyFastRepositoryForClass(Class<Value> clas) {
-        if (createdRepository.containsKey(clas)) {
-            if (createdRepository.get(clas) instanceof FastRepository) {
-                return (Repository<Value>) createdRepository.get(clas);
-            } else {
-                Repository<?> oldRepository = createdRepository.get(clas);
-                oldRepository.flush();
-                oldRepository.lock();
+    public <Value> Repository<Value> getStrictlyFastRepositoryForClass(Class<Value> clas) {
+        repositoriesLock.lock();
+        try {
+            if (createdRepository.containsKey(clas)) {
+                if (createdRepository.get(clas) instanceof FastRepository) {
+                    return (Repository<Value>) createdRepository.get(clas);
+                } else {
+                    Repository<?> oldRepository = createdRepository.get(clas);
+                    oldRepository.flush();
+                    oldRepository.lock();
+                }
             }
+            Repository<Value> repository = new FastRepository<>(clas, directoryForRepository(clas));
+            createdRepository.put(clas, repository);
+            return repository;
+        } finally {
+            repositoriesLock.unlock();
         }
-        Repository<Value> repository = new FastRepository<>(clas, directoryForRepository(clas));
-        createdRepository.put(clas, repository);
-        return repository;
     }
 
     /**
@@ -141,21 +192,46 @@ public class DataStorage {
      * @param <Value> Type of entity
      * @return Repository for work with current entity
      */
-    public synchronized <Value> Repository<Value> getStrictlyFrugalRepositoryForClass(Class<Value> clas,
-                                                                                      int repositoryMaxMegabyteSize) {
-        if (createdRepository.containsKey(clas)) {
-            if (createdRepository.get(clas) instanceof FrugalRepository) {
-                return (Repository<Value>) createdRepository.get(clas);
-            } else {
-                Repository<?> oldRepository = createdRepository.get(clas);
-                oldRepository.flush();
-                oldRepository.lock();
+    public <Value> Repository<Value> getStrictlyFrugalRepositoryForClass(Class<Value> clas,
+                                                                         int repositoryMaxMegabyteSize) {
+        return getStrictlyFrugalRepositoryForClass(clas, repositoryMaxMegabyteSize, 0);
+    }
+
+    /**
+     * Create frugal repository or return exists, if it was created earlier.
+     * If exists repository have other type,
+     * makes an existing repository unavailable for writing and creates a new repository of the specified type.
+     * Clusters, dropped from RAM, are kept compressed outside the heap within the separate limit,
+     * which is not included into the limit of repository, and are read from file system only after that.
+     *
+     * @param clas                      Class of entity
+     * @param repositoryMaxMegabyteSize Max size of repository in RAM in megabytes
+     * @param offHeapMaxMegabyteSize    Max size of compressed clusters outside the heap in megabytes.
+     *                                  Zero disables keeping of clusters outside the heap.
+     * @param <Value>                   Type of entity
+     * @return Repository for work with current entity
+     */
+    public <Value> Repository<Value> getStrictlyFrugalRepositoryForClass(Class<Value> clas,
+                                                                         int repositoryMaxMegabyteSize,
+                                                                         int offHeapMaxMegabyteSize) {
+        repositoriesLock.lock();
+        try {
+            if (createdRepository.containsKey(clas)) {
+                if (createdRepository.get(clas) instanceof FrugalRepository) {
+                    return (Repository<Value>) createdRepository.get(clas);
+                } else {
+                    Repository<?> oldRepository = createdRepository.get(clas);
+                    oldRepository.flush();
+                    oldRepository.lock();
+                }
             }
+            Repository<Value> repository = new FrugalRepository<>(clas, directoryForRepository(clas),
+                    repositoryMaxMegabyteSize * 100, offHeapMaxMegabyteSize * 1024L * 1024);
+            createdRepository.put(clas, repository);
+            return repository;
+        } finally {
+            repositoriesLock.unlock();
         }
-        Repository<Value> repository = new FrugalRepository<>(clas, directoryForRepository(clas),
-                repositoryMaxMegabyteSize * 100);
-        createdRepository.put(clas, repository);
-        return repository;
     }
 
     /**
@@ -166,17 +242,47 @@ public class DataStorage {
      * @param <Value> Type of entity
      * @return Repository for work with current entity
      */
-    public synchronized <Value> Repository<Value> getRepositoryForClass(Class<Value> clas) {
-        if (!createdRepository.containsKey(clas)) {
-            File repositoryDirectory = directoryForRepository(clas);
-            if (repositoryDirectory.exists()) {
-                createdRepository.put(clas, getPreferablyFrugalRepositoryForClass(clas,
-                        (int) ((Runtime.getRuntime().maxMemory() - usedMemory()) / 10_485_760)));
-            } else {
-                createdRepository.put(clas, getPreferablyFastRepositoryForClass(clas));
+    public <Value> Repository<Value> getRepositoryForClass(Class<Value> clas) {
+        repositoriesLock.lock();
+        try {
+            if (!createdRepository.containsKey(clas)) {
+                File repositoryDirectory = directoryForRepository(clas);
+                if (repositoryDirectory.exists()) {
+                    createdRepository.put(clas, getPreferablyFrugalRepositoryForClass(clas,
+                            (int) ((Runtime.getRuntime().maxMemory() - usedMemory()) / 10_485_760)));
+                } else {
+                    createdRepository.put(clas, getPreferablyFastRepositoryForClass(clas));
+                }
             }
+            return (Repository<Value>) createdRepository.get(clas);
+        } finally {
+            repositoriesLock.unlock();
         }
-        return (Repository<Value>) createdRepository.get(clas);
+    }
+
+    /**
+     * Create asynchronous view of repository for current entity, which executes operations on the specified executor.
+     * Repository is created, if it was not created earlier.
+     *
+     * @param clas     Class of entity
+     * @param executor Executor of operations
+     * @param <Value>  Type of entity
+     * @return Asynchronous repository for work with current entity
+     */
+    public <Value> AsyncRepository<Value> getAsyncRepositoryForClass(Class<Value> clas, Executor executor) {
+        return new AsyncRepository<>(getRepositoryForClass(clas), executor);
+    }
+
+    /**
+     * Create asynchronous view of repository for current entity, which executes operations on the common pool.
+     * Repository is created, if it was not created earlier.
+     *
+     * @param clas    Class of entity
+     * @param <Value> Type of entity
+     * @return Asynchronous repository for work with current entity
+     */
+    public <Value> AsyncRepository<Value> getAsyncRepositoryForClass(Class<Value> clas) {
+        return getAsyncRepositoryForClass(clas, ForkJoinPool.commonPool());
     }
 
     /**
@@ -1,6 +1,7 @@
 package io.github.alekseykn.imnorm;
 
 import io.github.alekseykn.imnorm.exceptions.DeadLockException;
+import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
 import io.github.alekseykn.imnorm.where.Condition;
 
 import java.io.File;
@@ -20,7 +21,7 @@ public class FastRepository<Record> extends Repository<Record> {
     /**
      * The search tree where clusters and their initial keys are mapped
      */
-    private final TreeMap<Integer, Cluster<Record>> data = new TreeMap<>();
+    private final TreeMap<Long, Cluster<Record>> data = new TreeMap<>();
 
     /**
      * Load clusters from file system to RAM
@@ -31,11 +32,11 @@ public class FastRepository<Record> extends Repository<Record> {
     FastRepository(final Class<Record> type, final File directory) {
         super(type, directory);
 
-
-        for (File file : Objects.requireNonNull(directory.listFiles((dir, name) ->
-                !name.equals("_sequence.imnorm")))) {
-            data.put(Integer.parseInt(file.getName()),
-                    new Cluster<>(Integer.parseInt(file.getName()), clusterFileManipulator.read(file.toPath()), this));
+        for (File file : Objects.requireNonNull(directory.listFiles((dir, name) -> !name.startsWith("_")))) {
+            Cluster<Record> cluster =
+                    new Cluster<>(Long.parseLong(file.getName()), clusterFileManipulator.read(file.toPath()), this);
+            data.put(cluster.getFirstKey(), cluster);
+            addToSize(cluster.size());
         }
     }
 
@@ -46,12 +47,17 @@ public class FastRepository<Record> extends Repository<Record> {
      * @return Cluster, which can contains current id, or null, if such cluster not contains in data storage
      */
     @Override
-    protected synchronized Optional<Cluster<Record>> findCurrentClusterFromId(final int id) {
-        Map.Entry<Integer, Cluster<Record>> entry = data.floorEntry(id);
-        if (Objects.isNull(entry)) {
-            return Optional.empty();
-        } else {
-            return Optional.of(entry.getValue());
+    protected Optional<Cluster<Record>> findCurrentClusterFromId(final long id) {
+        repositoryLock.lock();
+        try {
+            Map.Entry<Long, Cluster<Record>> entry = data.floorEntry(id);
+            if (Objects.isNull(entry)) {
+                return Optional.empty();
+            } else {
+                return Optional.of(entry.getValue());
+            }
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
@@ -63,8 +69,13 @@ public class FastRepository<Record> extends Repository<Record> {
      * @param record The record being added to data storage
      */
     @Override
-    protected synchronized void createClusterForRecord(final int hash, final Object id, final Record record) {
-        data.put(hash, new Cluster<>(hash, id, record, this));
+    protected void createClusterForRecord(final long hash, final Object id, final Record record) {
+        repositoryLock.lock();
+        try {
+            data.put(hash, new Cluster<>(hash, id, record, this));
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -76,9 +87,14 @@ public class FastRepository<Record> extends Repository<Record> {
      * @param transaction Transaction, in which execute create
      */
     @Override
-    protected synchronized void createClusterForRecord(final int hash, final Object id, final Record record,
-                                                       final Transaction transaction) {
-        data.put(hash, new Cluster<>(hash, id, record, this, transaction));
+    protected void createClusterForRecord(final long hash, final Object id, final Record record,
+                                          final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            data.put(hash, new Cluster<>(hash, id, record, this, transaction));
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -87,11 +103,16 @@ public class FastRepository<Record> extends Repository<Record> {
      * @param records Records, for which needed to create new cluster
      */
     @Override
-    protected synchronized Cluster<Record> createClusterForRecords(final List<Record> records) {
-        Cluster<Record> cluster = super.createClusterForRecords(records);
-        data.put(cluster.getFirstKey(), cluster);
-        splitClusterIfNeed(cluster);
-        return cluster;
+    protected Cluster<Record> createClusterForRecords(final List<Record> records) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = super.createClusterForRecords(records);
+            data.put(cluster.getFirstKey(), cluster);
+            splitClusterIfNeed(cluster);
+            return cluster;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -101,12 +122,17 @@ public class FastRepository<Record> extends Repository<Record> {
      * @param transaction Transaction, in which execute create
      */
     @Override
-    protected synchronized Cluster<Record> createClusterForRecords(final List<Record> records,
-                                                                   final Transaction transaction) {
-        Cluster<Record> cluster = super.createClusterForRecords(records, transaction);
-        data.put(cluster.getFirstKey(), cluster);
-        splitClusterIfNeed(cluster);
-        return cluster;
+    protected Cluster<Record> createClusterForRecords(final List<Record> records,
+                                                      final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = super.createClusterForRecords(records, transaction);
+            data.put(cluster.getFirstKey(), cluster);
+            splitClusterIfNeed(cluster);
+            return cluster;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -178,10 +204,13 @@ public class FastRepository<Record> extends Repository<Record> {
     @Override
     public Set<Record> findAll(final int startIndex, final int rowCount) {
         List<Collection<Record>> clustersData;
-        synchronized (this) {
+        repositoryLock.lock();
+        try {
             clustersData = data.values().stream()
                     .map(Cluster::findAll)
                     .collect(Collectors.toList());
+        } finally {
+            repositoryLock.unlock();
         }
         return pagination(clustersData, startIndex, rowCount);
     }
@@ -198,10 +227,13 @@ public class FastRepository<Record> extends Repository<Record> {
     @Override
     public Set<Record> findAll(final int startIndex, final int rowCount, final Transaction transaction) {
         List<Collection<Record>> clustersData;
-        synchronized (this) {
+        repositoryLock.lock();
+        try {
             clustersData = data.values().stream()
                     .map(recordCluster -> recordCluster.findAll(transaction))
                     .collect(Collectors.toList());
+        } finally {
+            repositoryLock.unlock();
         }
         return pagination(clustersData, startIndex, rowCount);
     }
@@ -214,12 +246,21 @@ public class FastRepository<Record> extends Repository<Record> {
      * @throws DeadLockException Current record lock from other transaction
      */
     @Override
-    public synchronized Set<Record> findAll(final Condition<Record> condition) {
-        return data.values().stream()
-                .flatMap(recordCluster -> recordCluster.findAll().stream())
-                .parallel()
-                .filter(condition::fitsCondition)
-                .collect(Collectors.toSet());
+    public Set<Record> findAll(final Condition<Record> condition) {
+        Optional<Set<Record>> indexed = findAllByIndex(condition);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+        repositoryLock.lock();
+        try {
+            return data.values().stream()
+                    .flatMap(recordCluster -> recordCluster.findAll().stream())
+                    .parallel()
+                    .filter(condition::fitsCondition)
+                    .collect(Collectors.toSet());
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -250,11 +291,14 @@ public class FastRepository<Record> extends Repository<Record> {
     @Override
     public Set<Record> findAll(final Condition<Record> condition, final int startIndex, final int rowCount) {
         List<Collection<Record>> clustersData;
-        synchronized (this) {
+        repositoryLock.lock();
+        try {
             clustersData = data.values().stream()
                     .map(Cluster::findAll)
                     .map(records -> records.stream().filter(condition::fitsCondition).collect(Collectors.toList()))
                     .collect(Collectors.toList());
+        } finally {
+            repositoryLock.unlock();
         }
         return pagination(clustersData, startIndex, rowCount);
     }
@@ -273,11 +317,14 @@ public class FastRepository<Record> extends Repository<Record> {
     public Set<Record> findAll(final Condition<Record> condition, final int startIndex, final int rowCount,
                                final Transaction transaction) {
         List<Collection<Record>> clustersData;
-        synchronized (this) {
+        repositoryLock.lock();
+        try {
             clustersData = data.values().stream()
                     .map(recordCluster -> recordCluster.findAll(transaction))
                     .map(records -> records.stream().filter(condition::fitsCondition).collect(Collectors.toList()))
                     .collect(Collectors.toList());
+        } finally {
+            repositoryLock.unlock();
         }
         return pagination(clustersData, startIndex, rowCount);
     }
@@ -288,43 +335,143 @@ public class FastRepository<Record> extends Repository<Record> {
      * @throws DeadLockException Current record lock from other transaction
      */
     @Override
-    public synchronized void deleteAll() {
-        super.deleteAll();
-        data.clear();
+    public void deleteAll() {
+        repositoryLock.lock();
+        try {
+            super.deleteAll();
+            data.clear();
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
      * Save data from current repository to file system
      */
     @Override
-    public synchronized void flush() {
-        super.flush();
-        data.values().forEach(Cluster::flush);
+    public void flush() {
+        repositoryLock.lock();
+        try {
+            super.flush();
+            data.values().forEach(Cluster::flush);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
-    /**
-     * @return Number of records in the repository
-     */
     @Override
-    public synchronized long size() {
-        return data.values().stream().mapToInt(Cluster::size).sum();
+    protected void deleteClusterIfNeed(final Cluster<Record> cluster) {
+        repositoryLock.lock();
+        try {
+            if (cluster.isEmpty() && cluster.hasNotOpenTransactions()) {
+                cluster.setDropped(true);
+                try {
+                    Files.delete(Path.of(directory.getAbsolutePath(), Long.toString(cluster.getFirstKey())));
+                } catch (IOException ignore) {
+                }
+                data.remove(cluster.getFirstKey());
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     @Override
-    protected synchronized void deleteClusterIfNeed(final Cluster<Record> cluster) {
-        if (cluster.isEmpty()) {
+    protected boolean deleteClusterWithoutUploading(final long firstKey) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = data.get(firstKey);
+            if (Objects.nonNull(cluster)) {
+                if (!cluster.hasNotOpenTransactions()) {
+                    return false;
+                }
+                cluster.setDropped(true);
+                data.remove(firstKey);
+                addToSize(-cluster.size());
+                indexes.removeAll(cluster.findAllInOrder());
+            }
             try {
-                Files.delete(Path.of(directory.getAbsolutePath(), Integer.toString(cluster.getFirstKey())));
-            } catch (IOException ignore) {
+                Files.deleteIfExists(Path.of(directory.getAbsolutePath(), Long.toString(firstKey)));
+            } catch (IOException e) {
+                throw new InternalImnormException(e);
+            }
+            return true;
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected Optional<Long> findNextClusterKey(final Long clusterKey) {
+        repositoryLock.lock();
+        try {
+            if (data.isEmpty()) {
+                return Optional.empty();
             }
-            data.remove(cluster.getFirstKey());
+            return Optional.ofNullable(Objects.isNull(clusterKey) ? data.firstKey() : data.higherKey(clusterKey));
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
     @Override
-    protected synchronized void splitClusterIfNeed(final Cluster<Record> cluster) {
-        if (needSplit(data.size(), cluster.size())) {
-            cluster.split().ifPresent(newCluster -> data.put(newCluster.getFirstKey(), newCluster));
+    protected List<Record> findAllInCluster(final long clusterKey) {
+        Cluster<Record> cluster;
+        repositoryLock.lock();
+        try {
+            cluster = data.get(clusterKey);
+        } finally {
+            repositoryLock.unlock();
+        }
+        return Objects.isNull(cluster) ? List.of() : cluster.findAllInOrder();
+    }
+
+    @Override
+    protected Optional<Long> findFloorClusterKey(final long hash) {
+        repositoryLock.lock();
+        try {
+            return Optional.ofNullable(data.floorKey(hash));
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected NavigableMap<Long, List<Record>> findAllInCluster(final long clusterKey, final long fromHash) {
+        Cluster<Record> cluster;
+        repositoryLock.lock();
+        try {
+            cluster = data.get(clusterKey);
+        } finally {
+            repositoryLock.unlock();
+        }
+        return Objects.isNull(cluster) ? new TreeMap<>() : cluster.findAllFrom(fromHash);
+    }
+
+    @Override
+    protected NavigableSet<Long> findClusterKeys(final long fromHash, final long toHash) {
+        repositoryLock.lock();
+        try {
+            return fromHash < toHash
+                    ? new TreeSet<>(data.navigableKeySet().subSet(fromHash, true, toHash, false))
+                    : new TreeSet<>();
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected Optional<Cluster<Record>> splitClusterIfNeed(final Cluster<Record> cluster) {
+        repositoryLock.lock();
+        try {
+            if (!needSplit(data.size(), cluster.size())) {
+                return Optional.empty();
+            }
+            Optional<Cluster<Record>> newCluster = cluster.split();
+            newCluster.ifPresent(created -> data.put(created.getFirstKey(), created));
+            return newCluster;
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
@@ -336,7 +483,7 @@ public class FastRepository<Record> extends Repository<Record> {
      */
     @Override
     protected boolean existsById(final Object id) {
-        int hash = getHashFromId(id);
+        long hash = getHashFromId(id);
         if (hash > data.firstKey())
             return data.floorEntry(hash).getValue().containsKey(hash, id);
         else
@@ -0,0 +1,166 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.annotations.Indexed;
+import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import io.github.alekseykn.imnorm.where.FieldCondition;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes of fields, marked by {@link Indexed}: values of field mapped to ids of records with such value.
+ * Records can change between the search in index and the reading of records, so found records should be checked
+ * by condition again.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+final class FieldIndexes<Record> {
+    /**
+     * ID field of data entity
+     */
+    private final Field recordId;
+
+    /**
+     * Indexed fields by their names
+     */
+    private final Map<String, Field> fields = new HashMap<>();
+
+    /**
+     * Ids of records by values of field, by names of fields
+     */
+    private final Map<String, ConcurrentHashMap<Object, Set<Object>>> indexes = new HashMap<>();
+
+    /**
+     * Find fields, marked by {@link Indexed}
+     *
+     * @param type     Type of data entity
+     * @param recordId ID field of data entity
+     */
+    FieldIndexes(final Class<Record> type, final Field recordId) {
+        this.recordId = recordId;
+        for (Class<?> now = type; !now.equals(Object.class); now = now.getSuperclass()) {
+            for (Field field : now.getDeclaredFields()) {
+                if (Objects.nonNull(field.getAnnotation(Indexed.class))) {
+                    field.setAccessible(true);
+                    fields.put(field.getName(), field);
+                    indexes.put(field.getName(), new ConcurrentHashMap<>());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True, if data entity has indexed fields
+     */
+    boolean isEnabled() {
+        return !fields.isEmpty();
+    }
+
+    /**
+     * Add record to indexes of all fields
+     *
+     * @param record Added record
+     */
+    void add(final Record record) {
+        for (Map.Entry<String, Field> field : fields.entrySet()) {
+            Object value = valueOf(field.getValue(), record);
+            if (Objects.nonNull(value)) {
+                Object id = valueOf(recordId, record);
+                indexes.get(field.getKey()).compute(value, (key, ids) -> {
+                    Set<Object> result = Objects.isNull(ids) ? ConcurrentHashMap.newKeySet() : ids;
+                    result.add(id);
+                    return result;
+                });
+            }
+        }
+    }
+
+    /**
+     * Remove record from indexes of all fields
+     *
+     * @param record Removed record
+     */
+    void remove(final Record record) {
+        for (Map.Entry<String, Field> field : fields.entrySet()) {
+            Object value = valueOf(field.getValue(), record);
+            if (Objects.nonNull(value)) {
+                Object id = valueOf(recordId, record);
+                indexes.get(field.getKey()).computeIfPresent(value, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    /**
+     * Replace previous version of record by the new one in indexes of all fields
+     *
+     * @param previous Previous version of record or null, if record is new
+     * @param record   New version of record
+     */
+    void replace(final Record previous, final Record record) {
+        if (Objects.nonNull(previous)) {
+            remove(previous);
+        }
+        add(record);
+    }
+
+    /**
+     * @param records Added records
+     */
+    void addAll(final Collection<Record> records) {
+        records.forEach(this::add);
+    }
+
+    /**
+     * @param records Removed records
+     */
+    void removeAll(final Collection<Record> records) {
+        records.forEach(this::remove);
+    }
+
+    /**
+     * Remove all records from indexes
+     */
+    void clear() {
+        indexes.values().forEach(Map::clear);
+    }
+
+    /**
+     * Find ids of records, which can fit the condition
+     *
+     * @param condition Condition for search
+     * @return Ids of records with value of field, equal to the operand of condition,
+     * or empty, if field is not indexed or condition is not equality
+     */
+    Optional<Set<Object>> findIds(final FieldCondition<?, Record> condition) {
+        Map<Object, Set<Object>> index = indexes.get(condition.getFieldName());
+        if (Objects.isNull(index)) {
+            return Optional.empty();
+        }
+        return condition.getEqualityOperand().map(value -> new HashSet<>(index.getOrDefault(value, Set.of())));
+    }
+
+    /**
+     * @param field  Field of data entity
+     * @param record Data entity
+     * @return Value of field
+     * @throws InternalImnormException Reflection error
+     */
+    private Object valueOf(final Field field, final Record record) {
+        try {
+            return field.get(record);
+        } catch (IllegalAccessException e) {
+            throw new InternalImnormException(e);
+        }
+    }
+}
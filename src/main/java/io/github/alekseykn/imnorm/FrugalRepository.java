@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -22,12 +23,12 @@ public class FrugalRepository<Record> extends Repository<Record> {
     /**
      * Set of exists clusters in file data storage
      */
-    private final TreeSet<Integer> clusterNames = new TreeSet<>();
+    private final TreeSet<Long> clusterNames = new TreeSet<>();
 
     /**
      * Set of uploaded cluster in RAM
      */
-    private final LinkedHashMap<Integer, Cluster<Record>> openClusters;
+    private final LinkedHashMap<Long, Cluster<Record>> openClusters;
 
     /**
      * Max clusters quantity, which repository can upload in RAM
@@ -35,21 +36,68 @@ public class FrugalRepository<Record> extends Repository<Record> {
     private final int maxClustersQuantity;
 
     /**
-     * Find all clusters names, which exists in current directory
+     * Quantities of records of clusters, which are stored only in file system, by first keys of clusters
+     */
+    private final Map<Long, Integer> droppedClusterSizes = new HashMap<>();
+
+    /**
+     * Compressed records of clusters, which were dropped from RAM, for reading without file system
+     */
+    private final SerializedClusterCache<Record> serializedClusters;
+
+    /**
+     * Quantity of clusters, which were dropped from RAM. Changes of it mean, that files of clusters could be rewritten.
+     */
+    private long droppedClusters = 0;
+
+    /**
+     * Find all clusters names, which exists in current directory.
+     * Clusters, dropped from RAM, are read from file system only.
      *
      * @param type                Type of entry for this repository
      * @param directory           Directory, contains clusters for this repository
      * @param maxClustersQuantity Max clusters quantity, which repository can upload in RAM
      */
     FrugalRepository(final Class<Record> type, final File directory, final int maxClustersQuantity) {
+        this(type, directory, maxClustersQuantity, 0);
+    }
+
+    /**
+     * Find all clusters names, which exists in current directory
+     *
+     * @param type                Type of entry for this repository
+     * @param directory           Directory, contains clusters for this repository
+     * @param maxClustersQuantity Max clusters quantity, which repository can upload in RAM
+     * @param maxSerializedBytes  Max quantity of bytes outside the heap for compressed clusters, dropped from RAM
+     */
+    FrugalRepository(final Class<Record> type, final File directory, final int maxClustersQuantity,
+                     final long maxSerializedBytes) {
         super(type, directory);
         this.maxClustersQuantity = maxClustersQuantity;
+        serializedClusters = new SerializedClusterCache<>(clusterFileManipulator, maxSerializedBytes);
         assert maxClustersQuantity > 1;
         openClusters = new LinkedHashMap<>(maxClustersQuantity + 1);
         clusterNames.addAll(Arrays
-                .stream(Objects.requireNonNull(directory.list((dir, name) -> !name.equals("_sequence.imnorm"))))
-                .map(Integer::parseInt)
+                .stream(Objects.requireNonNull(directory.list((dir, name) -> !name.startsWith("_"))))
+                .map(Long::parseLong)
                 .collect(Collectors.toSet()));
+
+        Map<Long, Integer> savedSizes = readClusterSizes();
+        if (!savedSizes.keySet().equals(clusterNames)) {
+            savedSizes.clear();
+            for (long clusterName : clusterNames) {
+                savedSizes.put(clusterName, Cluster.countRecords(clusterFileManipulator
+                        .read(Path.of(directory.getAbsolutePath(), Long.toString(clusterName)))));
+            }
+        }
+        droppedClusterSizes.putAll(savedSizes);
+        savedSizes.values().forEach(this::addToSize);
+
+        if (indexes.isEnabled()) {
+            for (long clusterName : clusterNames) {
+                readCluster(clusterName).values().forEach(records -> indexes.addAll(records.values()));
+            }
+        }
     }
 
     /**
@@ -59,29 +107,52 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @return Cluster, which can contains current id, or null, if such cluster not contains in data storage
      */
     @Override
-    protected synchronized Optional<Cluster<Record>> findCurrentClusterFromId(final int id) {
-        Integer clusterId = clusterNames.floor(id);
-        if (openClusters.containsKey(clusterId)) {
-            return Optional.of(openClusters.get(clusterId));
-        } else {
-            if (Objects.isNull(clusterId)) {
-                return Optional.empty();
+    protected Optional<Cluster<Record>> findCurrentClusterFromId(final long id) {
+        return findCurrentClusterFromId(id, new HashMap<>());
+    }
+
+    /**
+     * Find cluster, which can contains current id. If such cluster not exists in RAM, take it from preloaded clusters
+     * or upload it from file data storage
+     *
+     * @param id        Record id, for which execute search
+     * @param preloaded Records of clusters, which were read from file data storage beforehand, by first keys of clusters
+     * @return Cluster, which can contains current id, or null, if such cluster not contains in data storage
+     */
+    private Optional<Cluster<Record>> findCurrentClusterFromId(final long id,
+                                                              final Map<Long, TreeMap<Long, Map<Object, Record>>> preloaded) {
+        repositoryLock.lock();
+        try {
+            Long clusterId = clusterNames.floor(id);
+            if (openClusters.containsKey(clusterId)) {
+                return Optional.of(openClusters.get(clusterId));
             } else {
-                try {
-                    Path clusterPath = Path.of(directory.getAbsolutePath(), clusterId.toString());
-                    TreeMap<Integer, Map<Object, Record>> tempClusterData = clusterFileManipulator.read(clusterPath);
-                    if (tempClusterData.isEmpty()) {
-                        Files.delete(clusterPath);
-                        return Optional.empty();
-                    } else {
-                        openClusters.put(clusterId, new Cluster<>(clusterId, tempClusterData, this));
-                        checkAndDropIfTooMuchOpenClusters();
-                        return Optional.of(openClusters.get(clusterId));
+                if (Objects.isNull(clusterId)) {
+                    return Optional.empty();
+                } else {
+                    try {
+                        Path clusterPath = Path.of(directory.getAbsolutePath(), clusterId.toString());
+                        TreeMap<Long, Map<Object, Record>> tempClusterData = preloaded.containsKey(clusterId)
+                                ? preloaded.remove(clusterId)
+                                : readCluster(clusterId);
+                        serializedClusters.remove(clusterId);
+                        droppedClusterSizes.remove(clusterId);
+                        if (tempClusterData.isEmpty()) {
+                            Files.delete(clusterPath);
+                            return Optional.empty();
+                        } else {
+                            Cluster<Record> cluster = new Cluster<>(clusterId, tempClusterData, this);
+                            openClusters.put(clusterId, cluster);
+                            checkAndDropIfTooMuchOpenClusters();
+                            return Optional.of(cluster);
+                        }
+                    } catch (IOException e) {
+                        throw new InternalImnormException(e);
                     }
-                } catch (IOException e) {
-                    throw new InternalImnormException(e);
                 }
             }
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
@@ -92,10 +163,15 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @param record The record being added to data storage
      */
     @Override
-    protected synchronized void createClusterForRecord(final int hash, final Object id, final Record record) {
-        openClusters.put(hash, new Cluster<>(hash, id, record, this));
-        clusterNames.add(hash);
-        checkAndDropIfTooMuchOpenClusters();
+    protected void createClusterForRecord(final long hash, final Object id, final Record record) {
+        repositoryLock.lock();
+        try {
+            openClusters.put(hash, new Cluster<>(hash, id, record, this));
+            clusterNames.add(hash);
+            checkAndDropIfTooMuchOpenClusters();
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -106,11 +182,16 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @param transaction Transaction, in which execute create
      */
     @Override
-    protected synchronized void createClusterForRecord(final int hash, final Object id, final Record record,
-                                                       final Transaction transaction) {
-        openClusters.put(hash, new Cluster<>(hash, id, record, this, transaction));
-        clusterNames.add(hash);
-        checkAndDropIfTooMuchOpenClusters();
+    protected void createClusterForRecord(final long hash, final Object id, final Record record,
+                                          final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            openClusters.put(hash, new Cluster<>(hash, id, record, this, transaction));
+            clusterNames.add(hash);
+            checkAndDropIfTooMuchOpenClusters();
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -119,14 +200,19 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @param records Records, for which needed to create new cluster
      */
     @Override
-    protected synchronized Cluster<Record> createClusterForRecords(final List<Record> records) {
-        Cluster<Record> cluster = super.createClusterForRecords(records);
-        openClusters.put(cluster.getFirstKey(), cluster);
-        clusterNames.add(cluster.getFirstKey());
-        splitClusterIfNeed(cluster);
-        checkAndDropIfTooMuchOpenClusters();
-
-        return cluster;
+    protected Cluster<Record> createClusterForRecords(final List<Record> records) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = super.createClusterForRecords(records);
+            openClusters.put(cluster.getFirstKey(), cluster);
+            clusterNames.add(cluster.getFirstKey());
+            splitClusterIfNeed(cluster);
+            checkAndDropIfTooMuchOpenClusters();
+
+            return cluster;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -136,14 +222,19 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @param transaction Transaction, in which execute create
      */
     @Override
-    protected synchronized Cluster<Record> createClusterForRecords(final List<Record> records,
-                                                                   final Transaction transaction) {
-        Cluster<Record> cluster = super.createClusterForRecords(records, transaction);
-        openClusters.put(cluster.getFirstKey(), cluster);
-        clusterNames.add(cluster.getFirstKey());
-        splitClusterIfNeed(cluster);
-        checkAndDropIfTooMuchOpenClusters();
-        return cluster;
+    protected Cluster<Record> createClusterForRecords(final List<Record> records,
+                                                      final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = super.createClusterForRecords(records, transaction);
+            openClusters.put(cluster.getFirstKey(), cluster);
+            clusterNames.add(cluster.getFirstKey());
+            splitClusterIfNeed(cluster);
+            checkAndDropIfTooMuchOpenClusters();
+            return cluster;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -154,8 +245,7 @@ public class FrugalRepository<Record> extends Repository<Record> {
     private Stream<Record> findRecordFromNotOpenClusters() {
         return clusterNames.parallelStream()
                 .filter(clusterName -> !openClusters.containsKey(clusterName))
-                .flatMap(clusterName -> clusterFileManipulator
-                        .read(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName))).values().stream())
+                .flatMap(clusterName -> readCluster(clusterName).values().stream())
                 .flatMap(map -> map.values().stream());
     }
 
@@ -222,12 +312,11 @@ public class FrugalRepository<Record> extends Repository<Record> {
         int currentClusterSize;
         List<Record> readLines = null;
 
-        for (int clusterName : clusterNames) {
+        for (long clusterName : clusterNames) {
             if (openClusters.containsKey(clusterName)) {
                 currentClusterSize = openClusters.get(clusterName).size();
             } else {
-                readLines = clusterFileManipulator
-                        .read(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName)))
+                readLines = readCluster(clusterName)
                         .values()
                         .stream()
                         .flatMap(map -> map.values().stream())
@@ -268,12 +357,11 @@ public class FrugalRepository<Record> extends Repository<Record> {
         int currentClusterSize;
         List<Record> readLines = null;
 
-        for (int clusterName : clusterNames) {
+        for (long clusterName : clusterNames) {
             if (openClusters.containsKey(clusterName)) {
                 currentClusterSize = openClusters.get(clusterName).sizeWithTransaction();
             } else {
-                readLines = clusterFileManipulator
-                        .read(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName)))
+                readLines = readCluster(clusterName)
                         .values()
                         .stream()
                         .flatMap(map -> map.values().stream())
@@ -308,6 +396,10 @@ public class FrugalRepository<Record> extends Repository<Record> {
      */
     @Override
     public Set<Record> findAll(final Condition<Record> condition) {
+        Optional<Set<Record>> indexed = findAllByIndex(condition);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
         Set<Record> result = openClusters.values().stream()
                 .flatMap(recordCluster -> recordCluster.findAll().stream().filter(condition::fitsCondition))
                 .collect(Collectors.toSet());
@@ -346,10 +438,10 @@ public class FrugalRepository<Record> extends Repository<Record> {
         HashSet<Record> result = new HashSet<>(rowCount);
         List<Record> records;
 
-        for (int clusterName : clusterNames) {
+        for (long clusterName : clusterNames) {
             records = (openClusters.containsKey(clusterName)
                     ? openClusters.get(clusterName).findAll().stream()
-                    : clusterFileManipulator.read(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName)))
+                    : readCluster(clusterName)
                     .values()
                     .stream()
                     .flatMap(map -> map.values().stream()))
@@ -386,10 +478,10 @@ public class FrugalRepository<Record> extends Repository<Record> {
         HashSet<Record> result = new HashSet<>(rowCount);
         List<Record> records;
 
-        for (int clusterName : clusterNames) {
+        for (long clusterName : clusterNames) {
             records = (openClusters.containsKey(clusterName)
                     ? openClusters.get(clusterName).findAll(transaction).stream()
-                    : clusterFileManipulator.read(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName)))
+                    : readCluster(clusterName)
                     .values()
                     .stream()
                     .flatMap(map -> map.values().stream()))
@@ -416,86 +508,334 @@ public class FrugalRepository<Record> extends Repository<Record> {
      * @throws DeadLockException Current record lock from other transaction
      */
     @Override
-    public synchronized void deleteAll() {
-        super.deleteAll();
-        clusterNames.clear();
-        openClusters.clear();
+    public void deleteAll() {
+        repositoryLock.lock();
+        try {
+            super.deleteAll();
+            clusterNames.clear();
+            droppedClusterSizes.clear();
+            serializedClusters.clear();
+            droppedClusters += openClusters.size();
+            openClusters.clear();
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
      * Save data from current repository to file system and remove all clusters from RAM
      */
     @Override
-    public synchronized void flush() {
-        super.flush();
-        openClusters.values().forEach(Cluster::flush);
-        Set<Integer> forDeleteKeys = openClusters.entrySet().parallelStream()
-                .filter(cluster -> cluster.getValue().hasNotOpenTransactions())
-                .peek(cluster -> cluster.getValue().setDropped(true))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
-        openClusters.entrySet().removeIf(entry -> forDeleteKeys.contains(entry.getKey()));
+    public void flush() {
+        repositoryLock.lock();
+        try {
+            super.flush();
+            openClusters.values().forEach(Cluster::flush);
+            Set<Long> forDeleteKeys = openClusters.entrySet().parallelStream()
+                    .filter(cluster -> cluster.getValue().hasNotOpenTransactions())
+                    .peek(cluster -> cluster.getValue().setDropped(true))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            Map<Long, Integer> sizes = new HashMap<>(droppedClusterSizes);
+            openClusters.forEach((key, cluster) -> sizes.put(key, cluster.size()));
+            saveClusterSizes(sizes);
+            forDeleteKeys.forEach(key -> {
+                droppedClusterSizes.put(key, sizes.get(key));
+                serializedClusters.put(openClusters.get(key));
+            });
+            openClusters.entrySet().removeIf(entry -> forDeleteKeys.contains(entry.getKey()));
+            droppedClusters += forDeleteKeys.size();
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
-     * @return Number of records in the repository
+     * Drop from RAM after save to file system the most previously opened cluster, which not contains open transaction,
+     * if quantity of clusters more max value.
+     * If all open clusters are used by transactions, spill to temporary file the transactional copy
+     * of the most previously opened cluster, which still keeps the copy in RAM.
      */
-    @Override
-    public synchronized long size() {
-        return clusterNames.parallelStream()
-                .filter(clusterName -> !openClusters.containsKey(clusterName))
-                .mapToLong(clusterName -> {
-                    try (Stream<String> stream =
-                                 Files.lines(Path.of(directory.getAbsolutePath(), Integer.toString(clusterName)))) {
-                        return stream.count();
-                    } catch (IOException e) {
-                        throw new InternalImnormException(e);
+    private void checkAndDropIfTooMuchOpenClusters() {
+        repositoryLock.lock();
+        try {
+            if (openClusters.size() > maxClustersQuantity) {
+                Iterator<Map.Entry<Long, Cluster<Record>>> it = openClusters.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Cluster<Record>> entry = it.next();
+                    if (entry.getValue().hasNotOpenTransactions()) {
+                        entry.getValue().flush();
+                        entry.getValue().setDropped(true);
+                        serializedClusters.put(entry.getValue());
+                        droppedClusterSizes.put(entry.getKey(), entry.getValue().size());
+                        it.remove();
+                        droppedClusters++;
+                        return;
                     }
-                }).sum()
-                + openClusters.values().stream().mapToInt(Cluster::size).sum();
+                }
+                for (Cluster<Record> cluster : openClusters.values()) {
+                    if (cluster.spill()) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
-     * Drop from RAM after save to file system the most previously opened cluster, which not contains open transaction,
-     * if quantity of clusters more max value
+     * Finds clusters, which can contain records with specified ids, and executes action for each of them.
+     * Clusters are processed by portions, not exceeding max quantity of clusters in RAM.
+     * Missing in RAM clusters of each portion are read from file data storage in parallel.
+     * Action is executed without the lock of repository, so found cluster can be split or dropped before it
+     * and action should check, that the cluster still keeps records with the hashes.
+     *
+     * @param idsByHash Ids of records, grouped by their hashes in ascending order
+     * @param action    Action, receiving cluster and ids, which it can contain, grouped by their hashes
+     */
+    @Override
+    protected void forEachClusterOfIds(final NavigableMap<Long, List<Object>> idsByHash,
+                                       final BiConsumer<Cluster<Record>, Map<Long, List<Object>>> action) {
+        TreeMap<Long, NavigableMap<Long, List<Object>>> idsByClusterKey = new TreeMap<>();
+        repositoryLock.lock();
+        try {
+            idsByHash.forEach((hash, ids) -> Optional.ofNullable(clusterNames.floor(hash)).ifPresent(key ->
+                    idsByClusterKey.computeIfAbsent(key, clusterKey -> new TreeMap<>()).put(hash, ids)));
+        } finally {
+            repositoryLock.unlock();
+        }
+
+        List<Long> clusterKeys = new ArrayList<>(idsByClusterKey.keySet());
+        for (int from = 0; from < clusterKeys.size(); from += maxClustersQuantity) {
+            List<Long> portion = clusterKeys.subList(from, Math.min(from + maxClustersQuantity, clusterKeys.size()));
+            long dropped;
+            List<Long> missing;
+            repositoryLock.lock();
+            try {
+                dropped = droppedClusters;
+                missing = portion.stream().filter(key -> !openClusters.containsKey(key)).collect(Collectors.toList());
+            } finally {
+                repositoryLock.unlock();
+            }
+
+            Map<Long, TreeMap<Long, Map<Object, Record>>> preloaded = missing.parallelStream()
+                    .map(this::preload)
+                    .flatMap(Optional::stream)
+                    .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
+
+            Map<Cluster<Record>, Map<Long, List<Object>>> clusters = new LinkedHashMap<>();
+            repositoryLock.lock();
+            try {
+                if (dropped != droppedClusters) {
+                    preloaded.clear();
+                }
+                portion.forEach(key -> idsByClusterKey.get(key).forEach((hash, ids) ->
+                        findCurrentClusterFromId(hash, preloaded).ifPresent(cluster ->
+                                clusters.computeIfAbsent(cluster, clusterKey -> new TreeMap<>()).put(hash, ids))));
+            } finally {
+                repositoryLock.unlock();
+            }
+            clusters.forEach(action);
+        }
+    }
+
+    /**
+     * Read records of cluster from RAM outside the heap or from file data storage without locking of repository
+     *
+     * @param clusterKey First key of the cluster
+     * @return Records of the cluster, or empty, if file of the cluster was deleted concurrently.
+     * Such cluster will be searched again under the lock of repository.
      */
-    private synchronized void checkAndDropIfTooMuchOpenClusters() {
-        if (openClusters.size() > maxClustersQuantity) {
-            Iterator<Map.Entry<Integer, Cluster<Record>>> it = openClusters.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<Integer, Cluster<Record>> entry = it.next();
-                if (entry.getValue().hasNotOpenTransactions()) {
-                    entry.getValue().flush();
-                    it.remove();
-                    break;
+    private Optional<Map.Entry<Long, TreeMap<Long, Map<Object, Record>>>> preload(final Long clusterKey) {
+        try {
+            return Optional.of(Map.entry(clusterKey, readCluster(clusterKey)));
+        } catch (InternalImnormException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    protected boolean deleteClusterWithoutUploading(final long firstKey) {
+        repositoryLock.lock();
+        try {
+            Cluster<Record> cluster = openClusters.get(firstKey);
+            if (Objects.nonNull(cluster)) {
+                if (!cluster.hasNotOpenTransactions()) {
+                    return false;
                 }
+                cluster.setDropped(true);
+                openClusters.remove(firstKey);
+                addToSize(-cluster.size());
+                indexes.removeAll(cluster.findAllInOrder());
+            } else {
+                if (indexes.isEnabled()) {
+                    readCluster(firstKey).values().forEach(records -> indexes.removeAll(records.values()));
+                }
+                addToSize(-droppedClusterSizes.getOrDefault(firstKey, 0));
+                droppedClusterSizes.remove(firstKey);
+                serializedClusters.remove(firstKey);
+            }
+            try {
+                Files.deleteIfExists(Path.of(directory.getAbsolutePath(), Long.toString(firstKey)));
+            } catch (IOException e) {
+                throw new InternalImnormException(e);
+            }
+            clusterNames.remove(firstKey);
+            return true;
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    boolean isInRam(final long hash) {
+        repositoryLock.lock();
+        try {
+            Long clusterKey = clusterNames.floor(hash);
+            return Objects.isNull(clusterKey) || openClusters.containsKey(clusterKey);
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    boolean isInRam() {
+        repositoryLock.lock();
+        try {
+            return openClusters.size() == clusterNames.size();
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected int maxClustersInRam() {
+        return maxClustersQuantity;
+    }
+
+    @Override
+    protected Optional<Long> findNextClusterKey(final Long clusterKey) {
+        repositoryLock.lock();
+        try {
+            if (clusterNames.isEmpty()) {
+                return Optional.empty();
             }
+            return Optional.ofNullable(Objects.isNull(clusterKey) ? clusterNames.first() : clusterNames.higher(clusterKey));
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
     @Override
-    protected synchronized void splitClusterIfNeed(final Cluster<Record> cluster) {
-        if (needSplit(clusterNames.size(), cluster.size())) {
-            cluster.split().ifPresent(newCluster -> {
-                int firstKeyNewCluster = newCluster.getFirstKey();
-                openClusters.put(firstKeyNewCluster, newCluster);
+    protected List<Record> findAllInCluster(final long clusterKey) {
+        Cluster<Record> cluster;
+        repositoryLock.lock();
+        try {
+            cluster = openClusters.get(clusterKey);
+            if (Objects.isNull(cluster)) {
+                return clusterNames.contains(clusterKey)
+                        ? readCluster(clusterKey)
+                        .values().stream()
+                        .flatMap(map -> map.values().stream())
+                        .collect(Collectors.toList())
+                        : List.of();
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
+        return cluster.findAllInOrder();
+    }
+
+    @Override
+    protected Optional<Long> findFloorClusterKey(final long hash) {
+        repositoryLock.lock();
+        try {
+            return Optional.ofNullable(clusterNames.floor(hash));
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected NavigableMap<Long, List<Record>> findAllInCluster(final long clusterKey, final long fromHash) {
+        Cluster<Record> cluster;
+        repositoryLock.lock();
+        try {
+            cluster = openClusters.get(clusterKey);
+            if (Objects.isNull(cluster)) {
+                return clusterNames.contains(clusterKey)
+                        ? Cluster.groupByHash(readCluster(clusterKey).tailMap(fromHash, true))
+                        : new TreeMap<>();
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
+        return cluster.findAllFrom(fromHash);
+    }
+
+    @Override
+    protected NavigableSet<Long> findClusterKeys(final long fromHash, final long toHash) {
+        repositoryLock.lock();
+        try {
+            return fromHash < toHash
+                    ? new TreeSet<>(clusterNames.subSet(fromHash, true, toHash, false))
+                    : new TreeSet<>();
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    @Override
+    protected Optional<Cluster<Record>> splitClusterIfNeed(final Cluster<Record> cluster) {
+        repositoryLock.lock();
+        try {
+            if (!needSplit(clusterNames.size(), cluster.size())) {
+                return Optional.empty();
+            }
+            Optional<Cluster<Record>> newCluster = cluster.split();
+            newCluster.ifPresent(created -> {
+                long firstKeyNewCluster = created.getFirstKey();
+                openClusters.put(firstKeyNewCluster, created);
                 clusterNames.add(firstKeyNewCluster);
             });
+            return newCluster;
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
     @Override
-    protected synchronized void deleteClusterIfNeed(final Cluster<Record> cluster) {
-        if (cluster.isEmpty()) {
-            try {
-                Files.delete(Path.of(directory.getAbsolutePath(), Integer.toString(cluster.getFirstKey())));
-            } catch (IOException ignore) {
+    protected void deleteClusterIfNeed(final Cluster<Record> cluster) {
+        repositoryLock.lock();
+        try {
+            if (cluster.isEmpty() && cluster.hasNotOpenTransactions()) {
+                cluster.setDropped(true);
+                try {
+                    Files.delete(Path.of(directory.getAbsolutePath(), Long.toString(cluster.getFirstKey())));
+                } catch (IOException ignore) {
+                }
+                clusterNames.remove(cluster.getFirstKey());
+                openClusters.remove(cluster.getFirstKey());
             }
-            clusterNames.remove(cluster.getFirstKey());
-            openClusters.remove(cluster.getFirstKey());
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
+    /**
+     * Read records of cluster, dropped from RAM. Compressed records outside the heap are used, if they are kept,
+     * otherwise records are read from file data storage.
+     *
+     * @param clusterKey First key of the cluster
+     * @return Records of the cluster
+     */
+    private TreeMap<Long, Map<Object, Record>> readCluster(final long clusterKey) {
+        return serializedClusters.get(clusterKey)
+                .orElseGet(() -> clusterFileManipulator
+                        .read(Path.of(directory.getAbsolutePath(), Long.toString(clusterKey))));
+    }
+
     /**
      * Checks the existence of a record with the specified id
      *
@@ -504,8 +844,8 @@ public class FrugalRepository<Record> extends Repository<Record> {
      */
     @Override
     protected boolean existsById(final Object id) {
-        int hashFromId = getHashFromId(id);
-        Integer clusterName = clusterNames.floor(hashFromId);
+        long hashFromId = getHashFromId(id);
+        Long clusterName = clusterNames.floor(hashFromId);
         if (Objects.nonNull(clusterName)) {
             Cluster<Record> cluster = openClusters.get(clusterName);
             if (Objects.nonNull(cluster)) {
@@ -513,7 +853,7 @@ public class FrugalRepository<Record> extends Repository<Record> {
             } else {
                 try (Stream<String> stream = Files.lines(Path.of(directory.getPath(), clusterName.toString()))) {
                     return stream.map(s -> s.substring(0, s.indexOf(':')))
-                            .map(Integer::parseInt)
+                            .map(Long::parseLong)
                             .anyMatch(s -> s.equals(hashFromId));
                 } catch (IOException e) {
                     throw new InternalImnormException(e);
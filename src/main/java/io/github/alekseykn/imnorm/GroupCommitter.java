@@ -0,0 +1,123 @@
+package io.github.alekseykn.imnorm;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Saving of committed transactions to file system in the single background thread.
+ * All commits, which were submitted while the previous group was saved, are saved together:
+ * each repository and each cluster is written once per group.
+ *
+ * @author Aleksey-Kn
+ */
+final class GroupCommitter {
+    /**
+     * Lock, guarding the pending commits
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Condition of appearance of pending commits
+     */
+    private final Condition submitted = lock.newCondition();
+
+    /**
+     * Commits, which wait for saving
+     */
+    private List<Commit> pending = new ArrayList<>();
+
+    /**
+     * Create committer and start its background thread
+     */
+    GroupCommitter() {
+        start();
+    }
+
+    /**
+     * Starts the background thread, which saves pending commits
+     */
+    private void start() {
+        Thread committer = new Thread(this::run, "imnorm-group-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Adds committed clusters to the next group of saving
+     *
+     * @param clusters Committed clusters
+     * @return Future, which completes after saving of the specified clusters
+     */
+    CompletableFuture<Void> submit(final Collection<Cluster<?>> clusters) {
+        Commit commit = new Commit(clusters, new CompletableFuture<>());
+        lock.lock();
+        try {
+            pending.add(commit);
+            submitted.signal();
+        } finally {
+            lock.unlock();
+        }
+        return commit.durability;
+    }
+
+    /**
+     * Saves groups of pending commits, while the application works.
+     * If the thread is interrupted, pending and future commits are passed to a new background thread,
+     * so their futures are completed anyway.
+     */
+    private void run() {
+        while (true) {
+            List<Commit> group;
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    submitted.await();
+                }
+                group = pending;
+                pending = new ArrayList<>();
+            } catch (InterruptedException e) {
+                start();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            save(group);
+        }
+    }
+
+    /**
+     * Saves clusters of the group of commits and completes their futures
+     *
+     * @param group Commits, which are saved together
+     */
+    private void save(final List<Commit> group) {
+        try {
+            Map<Repository<?>, Set<Cluster<?>>> clusters = group.stream()
+                    .flatMap(commit -> commit.clusters.stream())
+                    .collect(Collectors.groupingBy(Cluster::getRepository, Collectors.toCollection(HashSet::new)));
+            clusters.forEach(Repository::flush);
+            group.forEach(commit -> commit.durability.complete(null));
+        } catch (RuntimeException e) {
+            group.forEach(commit -> commit.durability.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Committed clusters of one transaction and future of their saving
+     */
+    @AllArgsConstructor
+    private static final class Commit {
+        private final Collection<Cluster<?>> clusters;
+        private final CompletableFuture<Void> durability;
+    }
+}
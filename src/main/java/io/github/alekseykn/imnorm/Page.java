@@ -0,0 +1,35 @@
+package io.github.alekseykn.imnorm;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Page of records, found by keyset pagination
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class Page<Record> {
+    /**
+     * Records of the page in ascending order of hashes of id and of ids with the same hash
+     */
+    @Getter
+    private final List<Record> records;
+
+    /**
+     * Cursor, after which the next page begins, or null, if it is the last page
+     */
+    private final String nextCursor;
+
+    /**
+     * @return Cursor for search of the next page, or empty, if it is the last page
+     */
+    public Optional<String> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.where.Condition;
+import lombok.AllArgsConstructor;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher of records of repository, which are suitable for the condition.
+ * Records are read cluster by cluster, when subscriber requests them, so only the cluster being emitted is kept in memory.
+ * Records are emitted in the thread, which requests them.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+@AllArgsConstructor
+final class RecordPublisher<Record> implements Flow.Publisher<Record> {
+    /**
+     * Repository, which records are published
+     */
+    private final Repository<Record> repository;
+
+    /**
+     * Condition of published records
+     */
+    private final Condition<Record> condition;
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super Record> subscriber) {
+        subscriber.onSubscribe(new ClusterSubscription(subscriber));
+    }
+
+    /**
+     * Subscription, which reads the next cluster, when records of the current one were emitted
+     */
+    private final class ClusterSubscription implements Flow.Subscription {
+        /**
+         * Receiver of records
+         */
+        private final Flow.Subscriber<? super Record> subscriber;
+
+        /**
+         * Quantity of requested and not emitted records
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Quantity of calls of emitting, which were not processed yet. Only one thread emits records at a time.
+         */
+        private final AtomicInteger pendingEmits = new AtomicInteger();
+
+        /**
+         * First key of the cluster being emitted, or null before the first cluster
+         */
+        private Long clusterKey = null;
+
+        /**
+         * Not emitted records of the cluster being emitted
+         */
+        private Iterator<Record> records = Collections.emptyIterator();
+
+        /**
+         * True, if subscription was cancelled or completed
+         */
+        private volatile boolean finished = false;
+
+        private ClusterSubscription(final Flow.Subscriber<? super Record> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                finish();
+                subscriber.onError(new IllegalArgumentException("Requested quantity of records must be positive: " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            emit();
+        }
+
+        @Override
+        public void cancel() {
+            finish();
+        }
+
+        /**
+         * Marks the subscription as finished
+         */
+        private void finish() {
+            finished = true;
+        }
+
+        /**
+         * Emits requested records. Reentrant calls from subscriber only increase demand,
+         * records are emitted by the outer call.
+         */
+        private void emit() {
+            if (pendingEmits.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                try {
+                    while (!finished && demand.get() > 0) {
+                        if (records.hasNext()) {
+                            demand.decrementAndGet();
+                            subscriber.onNext(records.next());
+                        } else {
+                            Optional<Long> nextClusterKey = repository.findNextClusterKey(clusterKey);
+                            if (nextClusterKey.isEmpty()) {
+                                finish();
+                                subscriber.onComplete();
+                            } else {
+                                clusterKey = nextClusterKey.get();
+                                records = repository.findAllInCluster(clusterKey).stream()
+                                        .filter(condition::fitsCondition)
+                                        .iterator();
+                            }
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    finish();
+                    subscriber.onError(e);
+                }
+                if (finished) {
+                    records = Collections.emptyIterator();
+                }
+            } while (pendingEmits.decrementAndGet() != 0);
+        }
+    }
+}
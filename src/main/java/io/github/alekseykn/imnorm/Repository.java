@@ -1,15 +1,27 @@
 package io.github.alekseykn.imnorm;
 
+import com.google.gson.Gson;
 import io.github.alekseykn.imnorm.annotations.GeneratedValue;
+import io.github.alekseykn.imnorm.annotations.Indexed;
 import io.github.alekseykn.imnorm.exceptions.*;
 import io.github.alekseykn.imnorm.utils.ClusterFileManipulator;
 import io.github.alekseykn.imnorm.utils.FieldUtil;
 import io.github.alekseykn.imnorm.where.Condition;
+import io.github.alekseykn.imnorm.where.FieldCondition;
 
 import java.io.*;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides an interface for manipulating with entity current type.
@@ -44,6 +56,16 @@ public abstract class Repository<Record> {
      */
     protected final ClusterFileManipulator<Record> clusterFileManipulator;
 
+    /**
+     * Converter of ids of records for cursors of pages
+     */
+    private static final Gson cursorGson = new Gson();
+
+    /**
+     * Indexes of fields, marked by {@link Indexed}
+     */
+    final FieldIndexes<Record> indexes;
+
     /**
      * Approximate size of one record in json string
      */
@@ -54,6 +76,21 @@ public abstract class Repository<Record> {
      */
     protected long sequence;
 
+    /**
+     * Value of sequence, which was written to file system last time
+     */
+    private long flushedSequence;
+
+    /**
+     * Quantity of records in the repository. It is changed by clusters together with their records.
+     */
+    private final AtomicLong recordsQuantity = new AtomicLong();
+
+    /**
+     * True, if file with quantities of records of clusters exists and clusters were not written after it
+     */
+    private boolean clusterSizesSaved = false;
+
     /**
      * Type of data entity
      */
@@ -64,6 +101,11 @@ public abstract class Repository<Record> {
      */
     protected boolean locked = false;
 
+    /**
+     * Lock of repository data. Clusters of this repository wait for release of their resources on its conditions.
+     */
+    protected final ReentrantLock repositoryLock = new ReentrantLock();
+
     /**
      * Analyse data entity type and create directory for clusters
      *
@@ -83,6 +125,7 @@ public abstract class Repository<Record> {
         needGenerateId = recordId.getAnnotation(GeneratedValue.class) != null;
         sizeOfEntity = FieldUtil.countFields(type) * 50;
         clusterFileManipulator = new ClusterFileManipulator<>(type, recordId);
+        indexes = new FieldIndexes<>(type, recordId);
 
         if (needGenerateId) {
             try (DataInputStream fileInputStream = new DataInputStream(
@@ -91,13 +134,146 @@ public abstract class Repository<Record> {
             } catch (IOException e) {
                 sequence = recordId.getAnnotation(GeneratedValue.class).startId();
             }
+            flushedSequence = sequence;
+        }
+        migrateKeysIfNeeded();
+    }
+
+    /**
+     * Rewrite clusters, saved before keys of long ids became 64-bit, when their keys were hash codes of ids.
+     * Keys of other types of id are not changed, so their clusters are only marked as migrated.
+     * New clusters are written into the temporary directory, legacy clusters are deleted only after that,
+     * and the marker is created only after new clusters are moved into place. Stages are marked by files,
+     * so interrupted migration is started again or continued on the next creation of repository.
+     */
+    private void migrateKeysIfNeeded() {
+        File marker = new File(directory.getAbsolutePath(), "_keys.imnorm");
+        if (marker.exists()) {
+            return;
+        }
+        File migrated = new File(directory.getAbsolutePath(), "_keys_migration");
+        File written = new File(directory.getAbsolutePath(), "_keys_written.imnorm");
+        File replaced = new File(directory.getAbsolutePath(), "_keys_replaced.imnorm");
+        if ((recordId.getType() == long.class || recordId.getType() == Long.class)
+                && (migrated.exists() || clusterFiles(directory).length > 0)) {
+            if (!written.exists() && !replaced.exists()) {
+                writeMigratedClusters(migrated);
+                createFile(written);
+            }
+            if (written.exists()) {
+                for (File file : clusterFiles(directory)) {
+                    deleteFile(file);
+                }
+                moveFile(written, replaced);
+            }
+            for (File file : clusterFiles(migrated)) {
+                moveFile(file, new File(directory.getAbsolutePath(), file.getName()));
+            }
+            new File(directory.getAbsolutePath(), "_sizes.imnorm").delete();
+        }
+        createFile(marker);
+        replaced.delete();
+        migrated.delete();
+    }
+
+    /**
+     * Write clusters with new keys into the temporary directory. Legacy clusters are read one at a time
+     * and their records are added to new clusters, which are split in half, when they become larger
+     * than the largest legacy cluster, so RAM keeps only one legacy and one new cluster at a time.
+     * New clusters are named by their first keys after all records are written.
+     *
+     * @param migrated Temporary directory for new clusters
+     */
+    private void writeMigratedClusters(final File migrated) {
+        if (migrated.exists()) {
+            for (File file : Objects.requireNonNull(migrated.listFiles())) {
+                deleteFile(file);
+            }
+        } else if (!migrated.mkdir()) {
+            throw new CreateDataStorageException(migrated);
+        }
+        TreeMap<Long, File> clusters = new TreeMap<>();
+        int maxKeys = 1;
+        int created = 0;
+        for (File legacy : clusterFiles(directory)) {
+            List<Record> records = new ArrayList<>();
+            clusterFileManipulator.read(legacy.toPath()).values().forEach(values -> records.addAll(values.values()));
+            TreeMap<Long, Map<Object, Record>> data = convertListToMap(records);
+            maxKeys = Math.max(maxKeys, data.size());
+            while (!data.isEmpty()) {
+                Long key = clusters.isEmpty()
+                        ? null
+                        : Optional.ofNullable(clusters.floorKey(data.firstKey())).orElse(clusters.firstKey());
+                Long next = Objects.isNull(key) ? null : clusters.higherKey(key);
+                File file = Objects.isNull(key) ? new File(migrated, "_" + created++) : clusters.remove(key);
+                TreeMap<Long, Map<Object, Record>> cluster = Objects.isNull(key)
+                        ? new TreeMap<>()
+                        : clusterFileManipulator.read(file.toPath());
+                SortedMap<Long, Map<Object, Record>> portion = Objects.isNull(next) ? data : data.headMap(next);
+                cluster.putAll(portion);
+                portion.clear();
+                if (cluster.size() > maxKeys) {
+                    SortedMap<Long, Map<Object, Record>> tail =
+                            cluster.tailMap(cluster.keySet().stream().skip(cluster.size() / 2).findFirst().orElseThrow());
+                    File tailFile = new File(migrated, "_" + created++);
+                    clusterFileManipulator.write(tailFile, new TreeMap<>(tail));
+                    clusters.put(tail.firstKey(), tailFile);
+                    tail.clear();
+                }
+                clusterFileManipulator.write(file, cluster);
+                clusters.put(cluster.firstKey(), file);
+            }
         }
+        clusters.forEach((key, file) -> moveFile(file, new File(migrated, Long.toString(key))));
+    }
+
+    /**
+     * @param directory Directory with clusters
+     * @return Files of clusters, ignoring service files
+     */
+    private static File[] clusterFiles(final File directory) {
+        return Objects.requireNonNull(directory.listFiles((dir, name) -> !name.startsWith("_")));
     }
 
     /**
-     * Function for get hash id entity id as int
+     * @param file Created empty file
+     * @throws InternalImnormException File was not created
      */
-    protected int getHashIdFromRecord(final Record record) {
+    private static void createFile(final File file) {
+        try {
+            if (!file.createNewFile())
+                throw new InternalImnormException(file.getAbsolutePath() + ".createNewFile()");
+        } catch (IOException e) {
+            throw new InternalImnormException(e);
+        }
+    }
+
+    /**
+     * @param file Deleted file
+     * @throws InternalImnormException File was not deleted
+     */
+    private static void deleteFile(final File file) {
+        if (!file.delete())
+            throw new InternalImnormException(file.getAbsolutePath() + ".delete()");
+    }
+
+    /**
+     * @param source Moved file
+     * @param target New place of file, which is replaced, if it exists
+     * @throws InternalImnormException File was not moved
+     */
+    private static void moveFile(final File source, final File target) {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new InternalImnormException(e);
+        }
+    }
+
+    /**
+     * Function for get key of entity id in the key space of clusters
+     */
+    protected long getHashIdFromRecord(final Record record) {
         try {
             return getHashFromId(recordId.get(record));
         } catch (IllegalAccessException e) {
@@ -117,11 +293,14 @@ public abstract class Repository<Record> {
     }
 
     /**
-     * Function for get string hash of id
+     * Function for get key of id in the key space of clusters. Keys of integral ids are their values,
+     * so they preserve order of ids and do not collide. Other ids are mapped by hash code.
      */
-    protected int getHashFromId(final Object id) {
-        if (id instanceof Integer || id instanceof Byte || id instanceof Short || id instanceof Character) {
-            return (int) id;
+    protected long getHashFromId(final Object id) {
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        } else if (id instanceof Character) {
+            return (Character) id;
         } else {
             return id.hashCode();
         }
@@ -194,7 +373,7 @@ public abstract class Repository<Record> {
      * @param id Record id, for which execute search
      * @return Cluster, which can contain current record
      */
-    protected abstract Optional<Cluster<Record>> findCurrentClusterFromId(int id);
+    protected abstract Optional<Cluster<Record>> findCurrentClusterFromId(long id);
 
     /**
      * Add new cluster and insert current record
@@ -202,7 +381,7 @@ public abstract class Repository<Record> {
      * @param id     String interpretation of id
      * @param record The record being added to data storage
      */
-    protected abstract void createClusterForRecord(int hashId, Object id, Record record);
+    protected abstract void createClusterForRecord(long hashId, Object id, Record record);
 
     /**
      * Add new cluster and insert current record in current transaction
@@ -211,7 +390,7 @@ public abstract class Repository<Record> {
      * @param record      The record being added to data storage
      * @param transaction Transaction, in which execute create
      */
-    protected abstract void createClusterForRecord(int hashId, Object id, Record record, Transaction transaction);
+    protected abstract void createClusterForRecord(long hashId, Object id, Record record, Transaction transaction);
 
     /**
      * Add new record if record with current id not exist in data storage.
@@ -223,18 +402,23 @@ public abstract class Repository<Record> {
      * else return inputted record
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Record save(final Record record) {
-        checkForBlocking();
-        generateAndSetIdForRecordIfNeeded(record);
-        int hashId = getHashIdFromRecord(record);
-        Object id = getOriginalIdFromRecord(record);
-
-        findCurrentClusterFromId(hashId).ifPresentOrElse(cluster -> {
-            cluster.set(hashId, id, record);
-            splitClusterIfNeed(cluster);
-        }, () -> createClusterForRecord(hashId, id, record));
-
-        return record;
+    public Record save(final Record record) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            generateAndSetIdForRecordIfNeeded(record);
+            long hashId = getHashIdFromRecord(record);
+            Object id = getOriginalIdFromRecord(record);
+
+            findCurrentClusterFromId(hashId).ifPresentOrElse(cluster -> {
+                cluster.set(hashId, id, record);
+                splitClusterIfNeed(cluster);
+            }, () -> createClusterForRecord(hashId, id, record));
+
+            return record;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -247,16 +431,21 @@ public abstract class Repository<Record> {
      * else return inputted record
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Record save(final Record record, final Transaction transaction) {
-        checkForBlocking();
-        generateAndSetIdForRecordIfNeeded(record);
-        int hashId = getHashIdFromRecord(record);
-        Object id = getOriginalIdFromRecord(record);
+    public Record save(final Record record, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            generateAndSetIdForRecordIfNeeded(record);
+            long hashId = getHashIdFromRecord(record);
+            Object id = getOriginalIdFromRecord(record);
 
-        findCurrentClusterFromId(hashId).ifPresentOrElse(cluster -> cluster.set(hashId, id, record, transaction),
-                () -> createClusterForRecord(hashId, id, record, transaction));
+            findCurrentClusterFromId(hashId).ifPresentOrElse(cluster -> cluster.set(hashId, id, record, transaction),
+                    () -> createClusterForRecord(hashId, id, record, transaction));
 
-        return record;
+            return record;
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -265,9 +454,9 @@ public abstract class Repository<Record> {
      * @param records Record list
      * @return Map, with contains hash, id and record
      */
-    private TreeMap<Integer, Map<Object, Record>> convertListToMap(final List<Record> records) {
-        TreeMap<Integer, Map<Object, Record>> data = new TreeMap<>();
-        int hash;
+    private TreeMap<Long, Map<Object, Record>> convertListToMap(final List<Record> records) {
+        TreeMap<Long, Map<Object, Record>> data = new TreeMap<>();
+        long hash;
         Object id;
 
         for (Record record : records) {
@@ -288,8 +477,10 @@ public abstract class Repository<Record> {
      * @param records Records, for which needed to create new cluster
      */
     protected Cluster<Record> createClusterForRecords(final List<Record> records) {
-        TreeMap<Integer, Map<Object, Record>> data = convertListToMap(records);
-        return new Cluster<>(data.firstKey(), data, this);
+        TreeMap<Long, Map<Object, Record>> data = convertListToMap(records);
+        Cluster<Record> cluster = new Cluster<>(data.firstKey(), data, this);
+        addToSize(cluster.size());
+        return cluster;
     }
 
     /**
@@ -299,107 +490,206 @@ public abstract class Repository<Record> {
      * @param transaction Transaction, in which execute create
      */
     protected Cluster<Record> createClusterForRecords(final List<Record> records, final Transaction transaction) {
-        TreeMap<Integer, Map<Object, Record>> data = convertListToMap(records);
+        TreeMap<Long, Map<Object, Record>> data = convertListToMap(records);
         return new Cluster<>(data.firstKey(), data, this, transaction);
     }
 
     /**
-     * Make sorted by id list and change record id, where necessary
+     * Change record id, where necessary, and group records by hashes of id. Records are grouped in parallel.
+     * If collection contains several records with the same id, the last of them is kept.
      *
      * @param records Records collection
-     * @return Sorted by id records list
+     * @return Records, grouped by hashes of id in ascending order
      */
-    private List<Record> createRecordsSortedList(final Collection<Record> records) {
-        return records.stream()
-                .peek(this::generateAndSetIdForRecordIfNeeded)
-                .sorted(Comparator.comparing(this::getHashIdFromRecord).reversed())
-                .collect(Collectors.toList());
+    private NavigableMap<Long, Map<Object, Record>> groupRecordsByHash(final Collection<Record> records) {
+        records.forEach(this::generateAndSetIdForRecordIfNeeded);
+        return records.parallelStream()
+                .collect(Collectors.groupingBy(this::getHashIdFromRecord, TreeMap::new,
+                        Collectors.toMap(this::getOriginalIdFromRecord, record -> record,
+                                (first, second) -> second, HashMap::new)));
+    }
+
+    /**
+     * Distributes grouped records between clusters, which they belong to, and executes action for portions of clusters.
+     * Portion does not exceed quantity of clusters, which repository can keep in RAM.
+     *
+     * @param recordsByHash Records, grouped by hashes of id in ascending order
+     * @param action        Action, receiving portion of clusters with their records
+     * @return Records, for which clusters not exist
+     */
+    private List<Record> forEachPortionOfClusters(
+            final NavigableMap<Long, Map<Object, Record>> recordsByHash,
+            final Consumer<Map<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>>> action) {
+        List<Record> withoutCluster = new ArrayList<>();
+        Map<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>> portion = new LinkedHashMap<>();
+        for (Map.Entry<Long, Map<Object, Record>> records : recordsByHash.entrySet()) {
+            Optional<Cluster<Record>> cluster = findCurrentClusterFromId(records.getKey());
+            if (cluster.isEmpty()) {
+                withoutCluster.addAll(records.getValue().values());
+            } else {
+                if (!portion.containsKey(cluster.get()) && portion.size() == maxClustersInRam()) {
+                    action.accept(portion);
+                    portion = new LinkedHashMap<>();
+                }
+                portion.computeIfAbsent(cluster.get(), key -> new TreeMap<>())
+                        .put(records.getKey(), records.getValue());
+            }
+        }
+        if (!portion.isEmpty()) {
+            action.accept(portion);
+        }
+        return withoutCluster;
+    }
+
+    /**
+     * Writes records into clusters of portion in parallel. Before writing it waits,
+     * while clusters or records are captured by transactions, and keeps the lock of repository after that,
+     * so no other thread can access the clusters during the writing.
+     * The lock is released while waiting, so clusters can be split or dropped meanwhile:
+     * records, which clusters are not current anymore, are saved one by one after the writing.
+     *
+     * @param portion Clusters with their records
+     * @throws LockTimeoutException The maximum waiting time has been exceeded
+     */
+    private void putAllInParallel(final Map<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>> portion) {
+        boolean waited;
+        do {
+            waited = false;
+            for (Map.Entry<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>> records : portion.entrySet()) {
+                if (records.getKey().isBlockedFor(records.getValue().keySet())) {
+                    records.getKey().waitReleaseOf(records.getValue().keySet());
+                    waited = true;
+                }
+            }
+        } while (waited);
+
+        List<Record> moved = new ArrayList<>();
+        for (Map.Entry<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>> records : portion.entrySet()) {
+            Iterator<Map.Entry<Long, Map<Object, Record>>> hashRecords = records.getValue().entrySet().iterator();
+            while (hashRecords.hasNext()) {
+                Map.Entry<Long, Map<Object, Record>> now = hashRecords.next();
+                if (!keepsHash(records.getKey(), now.getKey())) {
+                    moved.addAll(now.getValue().values());
+                    hashRecords.remove();
+                }
+            }
+        }
+        List<Cluster<Record>> clusters = new ArrayList<>();
+        for (Map.Entry<Cluster<Record>, NavigableMap<Long, Map<Object, Record>>> records : portion.entrySet()) {
+            if (records.getKey().isDropped()) {
+                records.getValue().values().forEach(hashRecords -> moved.addAll(hashRecords.values()));
+            } else if (!records.getValue().isEmpty()) {
+                clusters.add(records.getKey());
+            }
+        }
+        clusters.parallelStream().forEach(cluster -> cluster.putAll(portion.get(cluster)));
+        clusters.forEach(this::splitClusterWhileNeed);
+        moved.forEach(this::save);
+    }
+
+    /**
+     * Splits the cluster and its new parts, while they are too large
+     *
+     * @param cluster The cluster being checked
+     */
+    private void splitClusterWhileNeed(final Cluster<Record> cluster) {
+        splitClusterIfNeed(cluster).ifPresent(created -> {
+            splitClusterWhileNeed(cluster);
+            splitClusterWhileNeed(created);
+        });
+    }
+
+    /**
+     * @param hash Hash of id of record
+     * @return False, if cluster, which can contain record with specified hash of id, should be read from file system
+     */
+    boolean isInRam(final long hash) {
+        return true;
+    }
+
+    /**
+     * @return False, if some clusters of repository should be read from file system
+     */
+    boolean isInRam() {
+        return true;
+    }
+
+    /**
+     * @return Quantity of clusters, which repository can keep in RAM simultaneously
+     */
+    protected int maxClustersInRam() {
+        return Integer.MAX_VALUE;
     }
 
     /**
      * Save records collection to data storage: add new records and update exists records.
+     * Records are distributed between clusters and written into different clusters in parallel.
      * All too large clusters split.
      *
      * @param records Added records collection
      * @return Incoming collection with changed ids, where necessary
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Set<Record> saveAll(final Collection<Record> records) {
-        if (records.isEmpty())
-            return Set.of();
-        List<Record> sortedRecords = createRecordsSortedList(records);
-
-        Optional<Cluster<Record>> cluster = findCurrentClusterFromId(getHashIdFromRecord(sortedRecords.get(0)));
-        if (cluster.isEmpty()) {
-            createClusterForRecords(sortedRecords);
-        } else {
-            int id;
-            for (Record record : records) {
-                id = getHashIdFromRecord(record);
-                if (id < cluster.get().getFirstKey()) {
-                    splitClusterIfNeed(cluster.get());
-                    cluster = findCurrentClusterFromId(id);
-                    if (cluster.isEmpty()) {
-                        createClusterForRecords(sortedRecords.subList(sortedRecords.indexOf(record),
-                                sortedRecords.size()));
-                        return new HashSet<>(sortedRecords);
-                    }
-                }
-                cluster.get().set(id, getOriginalIdFromRecord(record), record);
+    public Set<Record> saveAll(final Collection<Record> records) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            if (records.isEmpty())
+                return Set.of();
+            List<Record> withoutCluster = forEachPortionOfClusters(groupRecordsByHash(records), this::putAllInParallel);
+            if (!withoutCluster.isEmpty()) {
+                splitClusterWhileNeed(createClusterForRecords(withoutCluster));
             }
-            splitClusterIfNeed(cluster.get());
-        }
 
-        return new HashSet<>(sortedRecords);
+            return new HashSet<>(records);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
      * Save records collection to data storage: add new records and update exists records.
-     * All too large clusters split.
+     * Records are distributed between clusters and each cluster is captured by transaction once.
      *
      * @param records     Added records collection
      * @param transaction Transaction, in which execute save
      * @return Incoming collection with changed ids, where necessary
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Set<Record> saveAll(final Collection<Record> records, final Transaction transaction) {
-        if (records.isEmpty())
-            return Set.of();
-        List<Record> sortedRecords = createRecordsSortedList(records);
-
-        Optional<Cluster<Record>> cluster = findCurrentClusterFromId(getHashIdFromRecord(sortedRecords.get(0)));
-        if (cluster.isEmpty()) {
-            createClusterForRecords(sortedRecords);
-        } else {
-            int id;
-            for (Record record : records) {
-                id = getHashIdFromRecord(record);
-                if (id < cluster.get().getFirstKey()) {
-                    cluster = findCurrentClusterFromId(id);
-                    if (cluster.isEmpty()) {
-                        createClusterForRecords(sortedRecords.subList(sortedRecords.indexOf(record),
-                                sortedRecords.size()), transaction);
-                        return new HashSet<>(sortedRecords);
-                    }
-                }
-                cluster.get().set(id, getOriginalIdFromRecord(record), record, transaction);
+    public Set<Record> saveAll(final Collection<Record> records, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            if (records.isEmpty())
+                return Set.of();
+            List<Record> withoutCluster = forEachPortionOfClusters(groupRecordsByHash(records), portion ->
+                    portion.forEach((cluster, clusterRecords) -> cluster.setAll(clusterRecords, transaction)));
+            if (!withoutCluster.isEmpty()) {
+                createClusterForRecords(withoutCluster, transaction);
             }
-            splitClusterIfNeed(cluster.get());
-        }
 
-        return new HashSet<>(sortedRecords);
+            return new HashSet<>(records);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
-     * Find record with current id
+     * Find record with current id.
+     * If the cluster was split or dropped while searching, the record is searched again in the current cluster.
      *
      * @param id Id of the record being searched
      * @return Found record
      * @throws DeadLockException Current record lock from other transaction
      */
     public Optional<Record> findById(final Object id) {
-        int hash = getHashFromId(id);
-        return Optional.ofNullable(findCurrentClusterFromId(hash).orElseThrow().get(hash, id));
+        long hash = getHashFromId(id);
+        Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
+        Optional<Record> record = cluster.map(current -> current.get(hash, id));
+        if (record.isEmpty() && cluster.isPresent() && !keepsHash(cluster.get(), hash)) {
+            return findById(id);
+        }
+        return record;
     }
 
     /**
@@ -411,8 +701,110 @@ public abstract class Repository<Record> {
      * @throws DeadLockException Current record lock from other transaction
      */
     public Optional<Record> findById(final Object id, final Transaction transaction) {
-        int hash = getHashFromId(id);
-        return Optional.ofNullable(findCurrentClusterFromId(hash).orElseThrow().get(hash, id, transaction));
+        long hash = getHashFromId(id);
+        return findCurrentClusterFromId(hash).map(cluster -> cluster.get(hash, id, transaction));
+    }
+
+    /**
+     * Find records with specified ids. Ids are grouped by clusters, so each cluster is searched once.
+     *
+     * @param ids Ids of the records being searched
+     * @return Found records by their ids
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public Map<Object, Record> findAllById(final Collection<?> ids) {
+        Map<Object, Record> found = new HashMap<>();
+        forEachClusterOfIds(groupIdsByHash(ids), (cluster, idsOfCluster) -> {
+            repositoryLock.lock();
+            try {
+                idsOfCluster.forEach((hash, hashIds) -> hashIds.forEach(id -> {
+                    Record record = cluster.get(hash, id);
+                    if (!keepsHash(cluster, hash)) {
+                        record = findById(id).orElse(null);
+                    }
+                    if (Objects.nonNull(record)) {
+                        found.put(id, record);
+                    }
+                }));
+            } finally {
+                repositoryLock.unlock();
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Find records with specified ids in current transaction. Ids are grouped by clusters, so each cluster is searched once.
+     *
+     * @param ids         Ids of the records being searched
+     * @param transaction Transaction, in which execute find
+     * @return Found records by their ids
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public Map<Object, Record> findAllById(final Collection<?> ids, final Transaction transaction) {
+        Map<Object, Record> found = new HashMap<>();
+        forEachClusterOfIds(groupIdsByHash(ids), (cluster, idsOfCluster) -> {
+            repositoryLock.lock();
+            try {
+                idsOfCluster.forEach((hash, hashIds) -> hashIds.forEach(id -> {
+                    Record record = cluster.get(hash, id, transaction);
+                    if (Objects.isNull(record) && !keepsHash(cluster, hash)) {
+                        record = findById(id, transaction).orElse(null);
+                    }
+                    if (Objects.nonNull(record)) {
+                        found.put(id, record);
+                    }
+                }));
+            } finally {
+                repositoryLock.unlock();
+            }
+        });
+        return found;
+    }
+
+    /**
+     * @param ids Ids of records
+     * @return Distinct ids of records, grouped by their hashes in ascending order
+     */
+    private NavigableMap<Long, List<Object>> groupIdsByHash(final Collection<?> ids) {
+        return ids.stream()
+                .distinct()
+                .map(Object.class::cast)
+                .collect(Collectors.groupingBy(this::getHashFromId, TreeMap::new, Collectors.toList()));
+    }
+
+    /**
+     * Finds clusters, which can contain records with specified ids, and executes action for each of them.
+     * Action is executed without the lock of repository, so found cluster can be split or dropped before it
+     * and action should check, that the cluster still keeps records with the hashes.
+     *
+     * @param idsByHash Ids of records, grouped by their hashes in ascending order
+     * @param action    Action, receiving cluster and ids, which it can contain, grouped by their hashes
+     */
+    protected void forEachClusterOfIds(final NavigableMap<Long, List<Object>> idsByHash,
+                                       final BiConsumer<Cluster<Record>, Map<Long, List<Object>>> action) {
+        Map<Cluster<Record>, Map<Long, List<Object>>> clusters = new LinkedHashMap<>();
+        repositoryLock.lock();
+        try {
+            idsByHash.forEach((hash, ids) -> findCurrentClusterFromId(hash).ifPresent(cluster ->
+                    clusters.computeIfAbsent(cluster, key -> new TreeMap<>()).put(hash, ids)));
+        } finally {
+            repositoryLock.unlock();
+        }
+        clusters.forEach(action);
+    }
+
+    /**
+     * Checks, that the cluster, found for hash of id earlier, still keeps records with such hash.
+     * The cluster can be split or dropped, while the lock of repository is released, for example while waiting
+     * for release of records by transactions. Should be called under the lock of repository.
+     *
+     * @param cluster Cluster, found for hash of id earlier
+     * @param hash    Hash of id of record
+     * @return True, if the cluster is still current for specified hash of id
+     */
+    private boolean keepsHash(final Cluster<Record> cluster, final long hash) {
+        return !cluster.isDropped() && findCurrentClusterFromId(hash).orElse(null) == cluster;
     }
 
     /**
@@ -453,6 +845,23 @@ public abstract class Repository<Record> {
      */
     public abstract Set<Record> findAll(int startIndex, int rowCount, Transaction transaction);
 
+    /**
+     * Find records, suitable for the condition of equality of indexed field, through the index of field.
+     * Only records from the index are read, so clusters with other records are not uploaded to RAM.
+     *
+     * @param condition Condition for search
+     * @return Suitable records, or empty, if condition can not be checked by index
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    protected Optional<Set<Record>> findAllByIndex(final Condition<Record> condition) {
+        if (!(condition instanceof FieldCondition)) {
+            return Optional.empty();
+        }
+        return indexes.findIds((FieldCondition<?, Record>) condition).map(ids -> findAllById(ids).values().stream()
+                .filter(condition::fitsCondition)
+                .collect(Collectors.toSet()));
+    }
+
     /**
      * Find all records in current repository, suitable for the specified condition
      *
@@ -495,6 +904,180 @@ public abstract class Repository<Record> {
      */
     public abstract Set<Record> findAll(Condition<Record> condition, int startIndex, int rowCount, Transaction transaction);
 
+    /**
+     * Find records, which hashes of id are inside the range from hash of fromId inclusive to hash of toId exclusive.
+     * For ids of types long, int, short, byte and char it is the range of ids.
+     * Only clusters, which overlap the range, are read.
+     *
+     * @param fromId Lower bound of range, inclusive
+     * @param toId   Upper bound of range, exclusive
+     * @return Found records in ascending order of hashes of id
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public List<Record> findByIdRange(final Object fromId, final Object toId) {
+        return findByIdRange(fromId, toId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find records, which hashes of id are inside the range from hash of fromId inclusive to hash of toId exclusive.
+     * For ids of types long, int, short, byte and char it is the range of ids.
+     * Only clusters, which overlap the range, are read, and reading stops after the limit is reached.
+     *
+     * @param fromId Lower bound of range, inclusive
+     * @param toId   Upper bound of range, exclusive
+     * @param limit  Max quantity of found records
+     * @return Found records in ascending order of hashes of id
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public List<Record> findByIdRange(final Object fromId, final Object toId, final int limit) {
+        long fromHash = getHashFromId(fromId);
+        long toHash = getHashFromId(toId);
+        List<Record> records = new ArrayList<>();
+        if (fromHash >= toHash) {
+            return records;
+        }
+
+        Optional<Long> clusterKey = findFloorClusterKey(fromHash).or(() -> findNextClusterKey(null));
+        while (clusterKey.isPresent() && clusterKey.get() < toHash && records.size() < limit) {
+            for (List<Record> values : findAllInCluster(clusterKey.get(), fromHash).headMap(toHash, false).values()) {
+                records.addAll(values.subList(0, Math.min(values.size(), limit - records.size())));
+            }
+            clusterKey = findNextClusterKey(clusterKey.get());
+        }
+        return records;
+    }
+
+    /**
+     * Find page of records in ascending order of hashes of id and of ids with the same hash.
+     * Search begins directly from the position of cursor, so each page costs the same regardless of its number.
+     *
+     * @param afterCursor Cursor, returned with the previous page, or null for the first page
+     * @param limit       Max quantity of records on the page
+     * @return Found page of records
+     * @throws DeadLockException        Current record lock from other transaction
+     * @throws IllegalArgumentException Limit is not positive
+     */
+    public Page<Record> findPage(final String afterCursor, final int limit) {
+        return findPage(afterCursor, limit, record -> true);
+    }
+
+    /**
+     * Find page of records, suitable for the specified condition, in ascending order of hashes of id
+     * and of ids with the same hash. Search begins directly from the position of cursor,
+     * so each page costs the same regardless of its number. Cursor keeps the last id of the page,
+     * so records with the same hash are neither repeated nor skipped, when other records are changed between pages.
+     *
+     * @param afterCursor Cursor, returned with the previous page, or null for the first page
+     * @param limit       Max quantity of records on the page
+     * @param condition   Condition for search
+     * @return Found page of records
+     * @throws DeadLockException        Current record lock from other transaction
+     * @throws IllegalArgumentException Limit is not positive
+     */
+    public Page<Record> findPage(final String afterCursor, final int limit, final Condition<Record> condition) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Quantity of records on the page must be positive: " + limit);
+        }
+        long fromHash = Long.MIN_VALUE;
+        Object afterId = null;
+        if (Objects.nonNull(afterCursor)) {
+            int separator = afterCursor.indexOf(':');
+            fromHash = Long.parseLong(afterCursor.substring(0, separator));
+            afterId = cursorGson.fromJson(afterCursor.substring(separator + 1), recordId.getType());
+        }
+
+        List<Record> records = new ArrayList<>(limit);
+        Record last = null;
+        Optional<Long> clusterKey = findFloorClusterKey(fromHash).or(() -> findNextClusterKey(null));
+        while (clusterKey.isPresent() && records.size() < limit) {
+            for (Map.Entry<Long, List<Record>> hashRecords : findAllInCluster(clusterKey.get(), fromHash).entrySet()) {
+                List<Record> values = hashRecords.getValue();
+                values.sort((first, second) ->
+                        compareIds(getOriginalIdFromRecord(first), getOriginalIdFromRecord(second)));
+                for (Record record : values) {
+                    if (records.size() == limit) {
+                        break;
+                    }
+                    if (hashRecords.getKey() != fromHash || Objects.isNull(afterId)
+                            || compareIds(getOriginalIdFromRecord(record), afterId) > 0) {
+                        if (condition.fitsCondition(record)) {
+                            records.add(record);
+                        }
+                        last = record;
+                    }
+                }
+                if (records.size() == limit) {
+                    break;
+                }
+            }
+            clusterKey = findNextClusterKey(clusterKey.get());
+        }
+
+        return new Page<>(records, records.size() == limit
+                ? getHashIdFromRecord(last) + ":" + cursorGson.toJson(getOriginalIdFromRecord(last))
+                : null);
+    }
+
+    /**
+     * Compares ids of records with the same hash. Comparable ids are compared by their natural order,
+     * other ids are compared by their string representation.
+     *
+     * @param first  The id being compared
+     * @param second The id being compared
+     * @return Negative number, zero or positive number, if the first id is less, equal or greater than the second one
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareIds(final Object first, final Object second) {
+        return first instanceof Comparable
+                ? ((Comparable<Object>) first).compareTo(second)
+                : String.valueOf(first).compareTo(String.valueOf(second));
+    }
+
+    /**
+     * Lazy stream of all records of current repository in ascending order of hashes of id.
+     * Clusters are read one by one during traversal, so short-circuit operations stop reading of clusters.
+     * Parallel stream is split on the boundaries of clusters.
+     *
+     * @return Stream of all records, contains in current repository
+     */
+    public Stream<Record> stream() {
+        ClusterSpliterator<Record> spliterator = new ClusterSpliterator<>(this);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Lazy stream of records of current repository, suitable for the specified condition,
+     * in ascending order of hashes of id. Clusters are read one by one during traversal.
+     *
+     * @param condition Condition for search
+     * @return Stream of suitable for the specified condition records
+     */
+    public Stream<Record> stream(final Condition<Record> condition) {
+        return stream().filter(condition::fitsCondition);
+    }
+
+    /**
+     * Publish all records of current repository. Records are read cluster by cluster, when subscriber requests them,
+     * so only the cluster being emitted is kept in memory.
+     *
+     * @return Publisher of all records, contains in current repository
+     */
+    public Flow.Publisher<Record> publishAll() {
+        return new RecordPublisher<>(this, record -> true);
+    }
+
+    /**
+     * Publish records of current repository, suitable for the specified condition.
+     * Records are read cluster by cluster, when subscriber requests them,
+     * so only the cluster being emitted is kept in memory.
+     *
+     * @param condition Condition for search
+     * @return Publisher of suitable for the specified condition records
+     */
+    public Flow.Publisher<Record> publishAll(final Condition<Record> condition) {
+        return new RecordPublisher<>(this, condition);
+    }
+
     /**
      * Remove record with current id. If current cluster becomes empty it is deleted.
      *
@@ -502,8 +1085,13 @@ public abstract class Repository<Record> {
      * @return Record, which was deleted from repository, or null, if specified record not exist
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Optional<Record> deleteById(final Object id) {
-        return innerDelete(getHashFromId(id), id);
+    public Optional<Record> deleteById(final Object id) {
+        repositoryLock.lock();
+        try {
+            return innerDelete(getHashFromId(id), id);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -515,8 +1103,13 @@ public abstract class Repository<Record> {
      * if specified record not exist in current transaction
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Optional<Record> deleteById(final Object id, final Transaction transaction) {
-        return innerDelete(getHashFromId(id), id, transaction);
+    public Optional<Record> deleteById(final Object id, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            return innerDelete(getHashFromId(id), id, transaction);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -526,8 +1119,13 @@ public abstract class Repository<Record> {
      * @return Record, which was deleted, or null, where specified record not exist
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Optional<Record> delete(final Record record) {
-        return innerDelete(getHashIdFromRecord(record), getOriginalIdFromRecord(record));
+    public Optional<Record> delete(final Record record) {
+        repositoryLock.lock();
+        try {
+            return innerDelete(getHashIdFromRecord(record), getOriginalIdFromRecord(record));
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -538,8 +1136,13 @@ public abstract class Repository<Record> {
      * where specified record not exist in current transaction
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized Optional<Record> delete(final Record record, final Transaction transaction) {
-        return innerDelete(getHashIdFromRecord(record), getOriginalIdFromRecord(record), transaction);
+    public Optional<Record> delete(final Record record, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            return innerDelete(getHashIdFromRecord(record), getOriginalIdFromRecord(record), transaction);
+        } finally {
+            repositoryLock.unlock();
+        }
     }
 
     /**
@@ -551,15 +1154,20 @@ public abstract class Repository<Record> {
      * if specified record not exist in current transaction
      * @throws DeadLockException Current record lock from other transaction
      */
-    protected synchronized Optional<Record> innerDelete(final int hash, final Object id) {
-        checkForBlocking();
-        Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
-        if (cluster.isEmpty()) {
-            return Optional.empty();
-        } else {
-            Record record = cluster.get().delete(hash, id);
-            deleteClusterIfNeed(cluster.get());
-            return Optional.ofNullable(record);
+    protected Optional<Record> innerDelete(final long hash, final Object id) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
+            if (cluster.isEmpty()) {
+                return Optional.empty();
+            } else {
+                Record record = cluster.get().delete(hash, id);
+                deleteClusterIfNeed(cluster.get());
+                return Optional.ofNullable(record);
+            }
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
@@ -573,37 +1181,196 @@ public abstract class Repository<Record> {
      * if specified record not exist in current transaction
      * @throws DeadLockException Current record lock from other transaction
      */
-    protected synchronized Optional<Record> innerDelete(final int hash, final Object id, final Transaction transaction) {
-        checkForBlocking();
-        Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
-        if (cluster.isEmpty()) {
-            return Optional.empty();
-        } else {
-            return Optional.ofNullable(cluster.get().delete(hash, id, transaction));
+    protected Optional<Record> innerDelete(final long hash, final Object id, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
+            if (cluster.isEmpty()) {
+                return Optional.empty();
+            } else {
+                return Optional.ofNullable(cluster.get().delete(hash, id, transaction));
+            }
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
     /**
-     * Clear current repository from file system and RAM
+     * Remove records with specified ids. Ids are grouped by clusters, so each cluster is searched once.
+     * Clusters, which become empty, are deleted.
      *
+     * @param ids Ids of the records being deleted
+     * @return Deleted records by their ids
      * @throws DeadLockException Current record lock from other transaction
      */
-    public synchronized void deleteAll() {
+    public Map<Object, Record> deleteAllById(final Collection<?> ids) {
         checkForBlocking();
-        for (File file : Objects.requireNonNull(directory.listFiles())) {
-            if (!file.delete())
-                throw new InternalImnormException(file.getAbsolutePath() + ".delete()");
+        Map<Object, Record> deleted = new HashMap<>();
+        forEachClusterOfIds(groupIdsByHash(ids), (cluster, idsOfCluster) -> {
+            repositoryLock.lock();
+            try {
+                idsOfCluster.forEach((hash, hashIds) -> hashIds.forEach(id -> {
+                    Record record = cluster.delete(hash, id);
+                    if (Objects.isNull(record) && !keepsHash(cluster, hash)) {
+                        record = innerDelete(hash, id).orElse(null);
+                    }
+                    if (Objects.nonNull(record)) {
+                        deleted.put(id, record);
+                    }
+                }));
+                deleteClusterIfNeed(cluster);
+            } finally {
+                repositoryLock.unlock();
+            }
+        });
+        return deleted;
+    }
+
+    /**
+     * Remove records with specified ids in current transaction. Ids are grouped by clusters, so each cluster is searched once.
+     *
+     * @param ids         Ids of the records being deleted
+     * @param transaction Transaction, in which execute delete
+     * @return Records, which were deleted in current transaction, by their ids
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public Map<Object, Record> deleteAllById(final Collection<?> ids, final Transaction transaction) {
+        checkForBlocking();
+        Map<Object, Record> deleted = new HashMap<>();
+        forEachClusterOfIds(groupIdsByHash(ids), (cluster, idsOfCluster) -> {
+            repositoryLock.lock();
+            try {
+                idsOfCluster.forEach((hash, hashIds) -> hashIds.forEach(id -> {
+                    Record record = cluster.delete(hash, id, transaction);
+                    if (Objects.isNull(record) && !keepsHash(cluster, hash)) {
+                        record = innerDelete(hash, id, transaction).orElse(null);
+                    }
+                    if (Objects.nonNull(record)) {
+                        deleted.put(id, record);
+                    }
+                }));
+            } finally {
+                repositoryLock.unlock();
+            }
+        });
+        return deleted;
+    }
+
+    /**
+     * Remove records, which hashes of id are inside the range from hash of fromId inclusive to hash of toId exclusive.
+     * For ids of types long, int, short, byte and char it is the range of ids. Clusters, which lie entirely inside the range, are deleted
+     * without uploading to RAM, only boundary clusters are edited.
+     *
+     * @param fromId Lower bound of range, inclusive
+     * @param toId   Upper bound of range, exclusive
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public void deleteByIdRange(final Object fromId, final Object toId) {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            innerDeleteRange(getHashFromId(fromId), getHashFromId(toId));
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Remove records with hashes of id inside the specified range
+     *
+     * @param fromHash Lower bound of range, inclusive
+     * @param toHash   Upper bound of range, exclusive
+     */
+    protected void innerDeleteRange(final long fromHash, final long toHash) {
+        if (fromHash >= toHash) {
+            return;
+        }
+        repositoryLock.lock();
+        try {
+            Set<Long> edited = new HashSet<>();
+            for (long boundary : List.of(fromHash, toHash - 1)) {
+                findCurrentClusterFromId(boundary)
+                        .filter(cluster -> edited.add(cluster.getFirstKey()))
+                        .ifPresent(cluster -> {
+                            cluster.deleteRange(fromHash, toHash);
+                            deleteClusterIfNeed(cluster);
+                        });
+            }
+            for (long key : findClusterKeys(fromHash, toHash)) {
+                if (!edited.contains(key) && !deleteClusterWithoutUploading(key)) {
+                    Optional<Cluster<Record>> cluster = findCurrentClusterFromId(key);
+                    if (cluster.isPresent()) {
+                        cluster.get().deleteRange(fromHash, toHash);
+                        deleteClusterIfNeed(cluster.get());
+                    }
+                }
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Clear current repository from file system and RAM.
+     * The marker of migrated keys is kept, so new clusters are not migrated again on the next creation of repository.
+     *
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    public void deleteAll() {
+        repositoryLock.lock();
+        try {
+            checkForBlocking();
+            for (File file : Objects.requireNonNull(directory.listFiles())) {
+                if (file.getName().equals("_keys.imnorm"))
+                    continue;
+                if (!file.delete())
+                    throw new InternalImnormException(file.getAbsolutePath() + ".delete()");
+            }
+            recordsQuantity.set(0);
+            indexes.clear();
+        } finally {
+            repositoryLock.unlock();
         }
     }
 
     /**
      * Save data from current repository to file system
      */
-    public synchronized void flush() {
-        if (needGenerateId) {
+    public void flush() {
+        repositoryLock.lock();
+        try {
+            flushSequence();
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Save to file system only specified clusters of current repository and sequence, if it was changed.
+     * Dropped clusters are skipped: their data already saved or deleted.
+     *
+     * @param clusters Clusters of current repository, which should be saved
+     */
+    void flush(final Collection<Cluster<?>> clusters) {
+        repositoryLock.lock();
+        try {
+            flushSequence();
+            clusters.stream().filter(cluster -> !cluster.isDropped()).forEach(Cluster::flush);
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Save sequence to file system, if it was changed after last save
+     */
+    private void flushSequence() {
+        if (needGenerateId && sequence != flushedSequence) {
             try (DataOutputStream outputStream = new DataOutputStream(
                     new FileOutputStream(new File(directory.getAbsolutePath(), "_sequence.imnorm")))) {
                 outputStream.writeLong(sequence);
+                flushedSequence = sequence;
             } catch (IOException e) {
                 throw new InternalImnormException(e);
             }
@@ -613,14 +1380,141 @@ public abstract class Repository<Record> {
     /**
      * @return Number of records in the repository
      */
-    public abstract long size();
+    public long size() {
+        return recordsQuantity.get();
+    }
+
+    /**
+     * Changes quantity of records in the repository
+     *
+     * @param delta Change of quantity of records
+     */
+    void addToSize(final long delta) {
+        recordsQuantity.addAndGet(delta);
+    }
+
+    /**
+     * Read quantities of records of clusters, saved by the last flush
+     *
+     * @return Quantities of records by first keys of clusters, or empty map, if they were not saved
+     */
+    protected Map<Long, Integer> readClusterSizes() {
+        Map<Long, Integer> sizes = new HashMap<>();
+        try (DataInputStream inputStream = new DataInputStream(
+                new FileInputStream(new File(directory.getAbsolutePath(), "_sizes.imnorm")))) {
+            for (int quantity = inputStream.readInt(); quantity > 0; quantity--) {
+                sizes.put(inputStream.readLong(), inputStream.readInt());
+            }
+            clusterSizesSaved = true;
+            return sizes;
+        } catch (IOException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Save quantities of records of clusters to file system. The file is valid until the next writing of cluster.
+     *
+     * @param sizes Quantities of records by first keys of clusters
+     */
+    protected void saveClusterSizes(final Map<Long, Integer> sizes) {
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new FileOutputStream(new File(directory.getAbsolutePath(), "_sizes.imnorm")))) {
+            outputStream.writeInt(sizes.size());
+            for (Map.Entry<Long, Integer> size : sizes.entrySet()) {
+                outputStream.writeLong(size.getKey());
+                outputStream.writeInt(size.getValue());
+            }
+            clusterSizesSaved = true;
+        } catch (IOException e) {
+            throw new InternalImnormException(e);
+        }
+    }
+
+    /**
+     * Delete saved quantities of records of clusters before writing of cluster, because they become stale
+     */
+    void invalidateClusterSizes() {
+        if (clusterSizesSaved) {
+            new File(directory.getAbsolutePath(), "_sizes.imnorm").delete();
+            clusterSizesSaved = false;
+        }
+    }
+
+    /**
+     * Find first keys of clusters, which begin inside the specified range of hashes of id
+     *
+     * @param fromHash Lower bound of range, inclusive
+     * @param toHash   Upper bound of range, exclusive
+     * @return First keys of found clusters in ascending order
+     */
+    protected abstract NavigableSet<Long> findClusterKeys(long fromHash, long toHash);
+
+    /**
+     * Find first key of the cluster, which follows the specified cluster
+     *
+     * @param clusterKey First key of the previous cluster, or null to find the first cluster of the repository
+     * @return First key of the next cluster in ascending order
+     */
+    protected abstract Optional<Long> findNextClusterKey(Long clusterKey);
+
+    /**
+     * Find first key of the cluster, which can contain records with specified hash of id, without uploading it to RAM
+     *
+     * @param hash Hash of id
+     * @return First key of the cluster, or empty, if hash is less than the first key of all clusters
+     */
+    protected abstract Optional<Long> findFloorClusterKey(long hash);
+
+    /**
+     * Find records of the cluster with specified first key, which hashes of id are not less than the specified one.
+     * Cluster is not uploaded to RAM, if it is stored only in file system.
+     *
+     * @param clusterKey First key of the cluster
+     * @param fromHash   Lower bound of hashes of id, inclusive
+     * @return Found records, grouped by hashes of id in ascending order
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    protected abstract NavigableMap<Long, List<Record>> findAllInCluster(long clusterKey, long fromHash);
+
+    /**
+     * Find all records of the cluster with specified first key. Cluster is not uploaded to RAM, if it is stored
+     * only in file system.
+     *
+     * @param clusterKey First key of the cluster
+     * @return Records of the cluster in ascending order of hashes of id, or empty list, if such cluster not exists
+     * @throws DeadLockException Current record lock from other transaction
+     */
+    protected abstract List<Record> findAllInCluster(long clusterKey);
+
+    /**
+     * Captures clusters, which can contain records with specified hashes of id, by specified transaction.
+     * Clusters are captured in ascending order of their first keys.
+     *
+     * @param hashes      Hashes of id of records, which clusters should be captured
+     * @param transaction Transaction, which captures clusters
+     */
+    void captureClusters(final NavigableSet<Long> hashes, final Transaction transaction) {
+        repositoryLock.lock();
+        try {
+            for (long hash : hashes) {
+                Optional<Cluster<Record>> cluster = findCurrentClusterFromId(hash);
+                while (cluster.isPresent() && !cluster.get().capture(transaction)) {
+                    cluster = findCurrentClusterFromId(hash);
+                }
+            }
+        } finally {
+            repositoryLock.unlock();
+        }
+    }
 
     /**
      * Checks if the cluster needs to be split and splits it if necessary
      *
      * @param cluster The cluster being checked
+     * @return New cluster, which was split off from the specified cluster
      */
-    protected abstract void splitClusterIfNeed(Cluster<Record> cluster);
+    protected abstract Optional<Cluster<Record>> splitClusterIfNeed(Cluster<Record> cluster);
 
     /**
      * Check if the cluster needs to be deleted and delete it if necessary
@@ -629,6 +1523,14 @@ public abstract class Repository<Record> {
      */
     protected abstract void deleteClusterIfNeed(Cluster<Record> cluster);
 
+    /**
+     * Delete the cluster with its file without uploading it to RAM, if it is not used by open transactions
+     *
+     * @param firstKey First key of the cluster being deleted
+     * @return False, if the cluster is used by open transactions and was not deleted
+     */
+    protected abstract boolean deleteClusterWithoutUploading(long firstKey);
+
     /**
      * Makes the repository unavailable for further use on write data
      */
@@ -0,0 +1,220 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.exceptions.DeadLockException;
+import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import io.github.alekseykn.imnorm.exceptions.LockTimeoutException;
+import io.github.alekseykn.imnorm.exceptions.OptimisticLockException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rules of repeating of transactions, aborted because of conflicts with other transactions.
+ * Repeats are separated by pauses, which grow exponentially and are randomized to avoid simultaneous repeats.
+ * The number of attempts and the total time of execution can be limited.
+ * If repeating after exceeding of waiting time is allowed, the waiting time of transactions
+ * grows for the place of call, where such aborts happen, and decreases back when they stop.
+ * Statistics of attempts is collected for every place of call.
+ *
+ * @author Aleksey-Kn
+ */
+public class RetryPolicy {
+    /**
+     * Max ratio of adapted waiting time to the waiting time of policy
+     */
+    private static final int MAX_WAIT_TIME_FACTOR = 16;
+
+    /**
+     * Statistics of retries for every place of call
+     */
+    private static final Map<String, RetryStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * The waiting time for the cluster to be released in every attempt
+     */
+    private final int waitTime;
+
+    /**
+     * Pause before the first repeat in nanoseconds
+     */
+    private final long initialDelay;
+
+    /**
+     * Max pause between repeats in nanoseconds
+     */
+    private final long maxDelay;
+
+    /**
+     * Max number of attempts
+     */
+    private final int maxAttempts;
+
+    /**
+     * Max total time of all attempts in nanoseconds
+     */
+    private final long deadline;
+
+    /**
+     * Indicator of repeating of transactions after exceeding of waiting time
+     */
+    private final boolean retryOnTimeout;
+
+    /**
+     * Default policy: repeating only after deadlock without limit of attempts,
+     * with pauses from 1 to 100 ms and 250 ms of waiting for release of clusters.
+     *
+     * @return New policy
+     */
+    public static RetryPolicy exponentialBackoff() {
+        return new RetryPolicy(250, TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(100),
+                Integer.MAX_VALUE, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * @return Statistics of retries for every place of call in format "class.method:line"
+     */
+    public static Map<String, RetryStatistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    private RetryPolicy(final int waitTime, final long initialDelay, final long maxDelay, final int maxAttempts,
+                        final long deadline, final boolean retryOnTimeout) {
+        this.waitTime = waitTime;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.maxAttempts = maxAttempts;
+        this.deadline = deadline;
+        this.retryOnTimeout = retryOnTimeout;
+    }
+
+    /**
+     * @param waitBeforeThrowException Max wait time release cluster in every attempt
+     * @return Copy of this policy with specified waiting time
+     */
+    public RetryPolicy withWaitTime(final int waitBeforeThrowException) {
+        return new RetryPolicy(waitBeforeThrowException, initialDelay, maxDelay, maxAttempts, deadline, retryOnTimeout);
+    }
+
+    /**
+     * @param initialDelay Pause before the first repeat
+     * @param maxDelay     Max pause between repeats
+     * @return Copy of this policy with specified pauses
+     */
+    public RetryPolicy withBackoff(final Duration initialDelay, final Duration maxDelay) {
+        return new RetryPolicy(waitTime, initialDelay.toNanos(), maxDelay.toNanos(), maxAttempts, deadline,
+                retryOnTimeout);
+    }
+
+    /**
+     * @param maxAttempts Max number of attempts, including the first one
+     * @return Copy of this policy with specified limit of attempts
+     */
+    public RetryPolicy withMaxAttempts(final int maxAttempts) {
+        return new RetryPolicy(waitTime, initialDelay, maxDelay, maxAttempts, deadline, retryOnTimeout);
+    }
+
+    /**
+     * @param deadline Max total time of all attempts. New attempt is not started, if it would begin after this time.
+     * @return Copy of this policy with specified limit of time
+     */
+    public RetryPolicy withDeadline(final Duration deadline) {
+        return new RetryPolicy(waitTime, initialDelay, maxDelay, maxAttempts, deadline.toNanos(), retryOnTimeout);
+    }
+
+    /**
+     * @return Copy of this policy, which also repeats transactions after exceeding of waiting time
+     * and adapts the waiting time to contention
+     */
+    public RetryPolicy withRetryOnTimeout() {
+        return new RetryPolicy(waitTime, initialDelay, maxDelay, maxAttempts, deadline, true);
+    }
+
+    /**
+     * @param exception Exception, thrown from attempt
+     * @return True, if attempt can be repeated after such exception
+     */
+    boolean isRetryable(final Exception exception) {
+        return exception instanceof DeadLockException || exception instanceof OptimisticLockException
+                || retryOnTimeout && exception instanceof LockTimeoutException;
+    }
+
+    /**
+     * @param attempts Number of executed attempts
+     * @param start    Time of the beginning of the first attempt in nanoseconds
+     * @return True, if one more attempt is allowed
+     */
+    boolean canRetry(final int attempts, final long start) {
+        return attempts < maxAttempts && System.nanoTime() - start + delay(attempts) < deadline;
+    }
+
+    /**
+     * Sleeps before the next attempt for random time, limited by exponentially growing pause
+     *
+     * @param attempts Number of executed attempts
+     * @throws InternalImnormException The thread was interrupted while sleeping
+     */
+    void pause(final int attempts) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(delay(attempts) + 1));
+        } catch (InterruptedException e) {
+            throw new InternalImnormException(e);
+        }
+    }
+
+    /**
+     * @param statistics Statistics of place of call
+     * @return Waiting time for the next attempt, adapted to contention in the place of call
+     */
+    int waitTime(final RetryStatistics statistics) {
+        if (!retryOnTimeout) {
+            return waitTime;
+        }
+        return statistics.getWaitTime() == 0 ? waitTime : statistics.getWaitTime();
+    }
+
+    /**
+     * @param statistics Statistics of place of call
+     * @param attempts   Number of executed attempts
+     * @param timeout    True, if attempt was aborted because of exceeding of waiting time
+     * @return Waiting time after the attempt, increased after timeout and decreased after quick success
+     */
+    int adaptWaitTime(final RetryStatistics statistics, final int attempts, final boolean timeout) {
+        if (!retryOnTimeout) {
+            return waitTime;
+        }
+        int current = waitTime(statistics);
+        if (timeout) {
+            return (int) Math.min((long) current * 2, (long) waitTime * MAX_WAIT_TIME_FACTOR);
+        }
+        return attempts == 1 ? Math.max(waitTime, current / 2) : current;
+    }
+
+    /**
+     * @return Statistics of the place, from which the transaction with retry was called
+     */
+    static RetryStatistics statisticsOfCallSite() {
+        String callSite = StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(Transaction.class.getName())
+                        && !frame.getClassName().equals(RetryPolicy.class.getName()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+        return statistics.computeIfAbsent(callSite, site -> new RetryStatistics());
+    }
+
+    /**
+     * @param attempts Number of executed attempts
+     * @return Max pause after specified number of attempts in nanoseconds
+     */
+    private long delay(final int attempts) {
+        long delay = initialDelay;
+        for (int i = 1; i < attempts && delay > 0 && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelay);
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.alekseykn.imnorm;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of transactions with retry, called from one place of code
+ *
+ * @author Aleksey-Kn
+ */
+public class RetryStatistics {
+    /**
+     * Number of calls
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Number of attempts of all calls
+     */
+    private final LongAdder attempts = new LongAdder();
+
+    /**
+     * Number of attempts, aborted because of conflicts with other transactions
+     */
+    private final LongAdder aborts = new LongAdder();
+
+    /**
+     * Time, spent in aborted attempts, in nanoseconds
+     */
+    private final LongAdder wastedTime = new LongAdder();
+
+    /**
+     * Waiting time for release of clusters, adapted to contention. Zero, if it was not adapted yet.
+     */
+    private volatile int waitTime = 0;
+
+    /**
+     * @return Number of calls
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return Number of attempts of all calls
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * @return Number of attempts, aborted because of conflicts with other transactions
+     */
+    public long getAborts() {
+        return aborts.sum();
+    }
+
+    /**
+     * @return Time, spent in aborted attempts
+     */
+    public Duration getWastedTime() {
+        return Duration.ofNanos(wastedTime.sum());
+    }
+
+    /**
+     * @return Waiting time for release of clusters, adapted to contention, or zero, if it was not adapted
+     */
+    public int getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Registers new call
+     */
+    void registerCall() {
+        calls.increment();
+    }
+
+    /**
+     * Registers attempt and its result
+     *
+     * @param aborted  True, if attempt was aborted because of conflict with other transaction
+     * @param duration Duration of attempt in nanoseconds
+     * @param waitTime New adapted waiting time
+     */
+    void registerAttempt(final boolean aborted, final long duration, final int waitTime) {
+        attempts.increment();
+        if (aborted) {
+            aborts.increment();
+            wastedTime.add(duration);
+        }
+        this.waitTime = waitTime;
+    }
+}
@@ -0,0 +1,240 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import io.github.alekseykn.imnorm.utils.ClusterFileManipulator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Second tier of RAM for clusters, dropped from the first one. Records of cluster are kept compressed
+ * in the markup of file system in direct buffers outside the heap, so reading of cluster does not touch disk
+ * and kept clusters do not load the garbage collector. When the limit of bytes is exceeded,
+ * the least recently used clusters are forgotten and will be read from file system.
+ * Kept bytes always match the file of cluster: cluster is put here only after writing to file system
+ * and is removed from here, when it is uploaded to the first tier or deleted.
+ * Clusters are compressed by the separate thread, so dropping of cluster does not hold the lock of repository
+ * during compression. Until compression ends, records are taken from the dropped cluster itself.
+ *
+ * @param <Record> Type of data entity
+ * @author Aleksey-Kn
+ */
+final class SerializedClusterCache<Record> {
+    /**
+     * Thread for compression of dropped clusters outside the lock of repository
+     */
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(task -> {
+        Thread compressorThread = new Thread(task, "imnorm-cluster-compressor");
+        compressorThread.setDaemon(true);
+        return compressorThread;
+    });
+
+    /**
+     * Tool for conversion of records to bytes and back
+     */
+    private final ClusterFileManipulator<Record> clusterFileManipulator;
+
+    /**
+     * Max quantity of bytes, occupied by kept clusters
+     */
+    private final long maxBytes;
+
+    /**
+     * Compressed clusters by first keys in order of access. Every buffer begins with length of uncompressed bytes.
+     */
+    private final LinkedHashMap<Long, ByteBuffer> clusters = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Dropped clusters by first keys, which are waiting for compression
+     */
+    private final Map<Long, Cluster<Record>> pending = new HashMap<>();
+
+    /**
+     * Quantity of bytes, occupied by kept clusters
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Lock for access to kept clusters, because clusters are read without the lock of repository
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param clusterFileManipulator Tool for conversion of records to bytes and back
+     * @param maxBytes               Max quantity of bytes, occupied by kept clusters. Zero disables keeping.
+     */
+    SerializedClusterCache(final ClusterFileManipulator<Record> clusterFileManipulator, final long maxBytes) {
+        this.clusterFileManipulator = clusterFileManipulator;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Keep records of cluster, which was written to file system and dropped from RAM.
+     * The cluster is compressed later by the separate thread.
+     *
+     * @param cluster Dropped cluster
+     */
+    void put(final Cluster<Record> cluster) {
+        if (maxBytes == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            release(clusters.remove(cluster.getFirstKey()));
+            pending.put(cluster.getFirstKey(), cluster);
+        } finally {
+            lock.unlock();
+        }
+        compressor.execute(() -> keep(cluster));
+    }
+
+    /**
+     * Compress records of dropped cluster and keep them, if the cluster was not uploaded or deleted meanwhile
+     *
+     * @param cluster Dropped cluster
+     */
+    private void keep(final Cluster<Record> cluster) {
+        byte[] bytes = clusterFileManipulator.toBytes(cluster.getRecords());
+        byte[] compressed = compress(bytes);
+        ByteBuffer buffer = null;
+        if (Integer.BYTES + compressed.length <= maxBytes) {
+            buffer = ByteBuffer.allocateDirect(Integer.BYTES + compressed.length);
+            buffer.putInt(bytes.length).put(compressed).flip();
+        }
+
+        lock.lock();
+        try {
+            if (pending.remove(cluster.getFirstKey(), cluster) && Objects.nonNull(buffer)) {
+                clusters.put(cluster.getFirstKey(), buffer);
+                usedBytes += buffer.capacity();
+                Iterator<ByteBuffer> eldest = clusters.values().iterator();
+                while (usedBytes > maxBytes) {
+                    release(eldest.next());
+                    eldest.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Find kept records of cluster
+     *
+     * @param firstKey First key of cluster
+     * @return Records of cluster, or empty, if cluster is not kept
+     */
+    Optional<TreeMap<Long, Map<Object, Record>>> get(final long firstKey) {
+        ByteBuffer buffer;
+        Cluster<Record> cluster;
+        lock.lock();
+        try {
+            buffer = clusters.get(firstKey);
+            cluster = pending.get(firstKey);
+        } finally {
+            lock.unlock();
+        }
+        if (Objects.nonNull(cluster)) {
+            return Optional.of(cluster.getRecords());
+        }
+        if (Objects.isNull(buffer)) {
+            return Optional.empty();
+        }
+        buffer = buffer.duplicate();
+        byte[] bytes = new byte[buffer.getInt()];
+        byte[] compressed = new byte[buffer.remaining()];
+        buffer.get(compressed);
+        decompress(compressed, bytes);
+        return Optional.of(clusterFileManipulator.fromBytes(bytes));
+    }
+
+    /**
+     * Forget records of cluster, which was uploaded to RAM or deleted
+     *
+     * @param firstKey First key of cluster
+     */
+    void remove(final long firstKey) {
+        lock.lock();
+        try {
+            release(clusters.remove(firstKey));
+            pending.remove(firstKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget records of all clusters
+     */
+    void clear() {
+        lock.lock();
+        try {
+            clusters.clear();
+            pending.clear();
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param buffer Buffer, which is not kept anymore, or null
+     */
+    private void release(final ByteBuffer buffer) {
+        if (Objects.nonNull(buffer)) {
+            usedBytes -= buffer.capacity();
+        }
+    }
+
+    /**
+     * @param bytes Uncompressed bytes
+     * @return Compressed bytes
+     */
+    private static byte[] compress(final byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 16);
+            byte[] portion = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(portion, 0, deflater.deflate(portion));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param compressed Compressed bytes
+     * @param target     Array for uncompressed bytes of exactly their length
+     * @throws InternalImnormException Kept bytes are damaged
+     */
+    private static void decompress(final byte[] compressed, final byte[] target) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            if (inflater.inflate(target) != target.length) {
+                throw new DataFormatException("Kept cluster is shorter than expected");
+            }
+        } catch (DataFormatException e) {
+            throw new InternalImnormException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package io.github.alekseykn.imnorm;
 
-import io.github.alekseykn.imnorm.exceptions.DeadLockException;
 import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import io.github.alekseykn.imnorm.exceptions.LockTimeoutException;
+import io.github.alekseykn.imnorm.exceptions.OptimisticLockException;
+import io.github.alekseykn.imnorm.exceptions.TransactionExpiredException;
 import io.github.alekseykn.imnorm.exceptions.TransactionWasClosedException;
 import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Allows you to implement transactional behavior.
@@ -23,7 +40,16 @@ import java.util.function.Consumer;
  * Using only a blocking transaction ensures that no exception is thrown.
  * Waiting transactions will try to run in parallel. When accessing a cluster captured by another transaction,
  * the transaction will wait for it to be unlocked and, if the waiting time is too long, it will throw an exception.
+ * If waiting transactions wait for each other, the youngest of them is aborted at once with DeadLockException.
+ * Row-locking transactions work like waiting transactions, but capture separate records instead of whole clusters,
+ * so they wait only for transactions, which work with the same records.
+ * Reading of all cluster records from row-locking transaction captures the cluster entirely.
+ * Optimistic transactions capture nothing and never wait: they keep changes apart from the main data,
+ * remember versions of the read records and check them on commit.
+ * If the read records were changed by other transactions, commit of optimistic transaction throws an exception.
  * If the thread from which the transaction was created is interrupted, the transaction is canceled automatically.
+ * Transaction with limited maximum duration is canceled automatically after expiration of the duration,
+ * even if its thread is alive.
  *
  * @author Aleksey-Kn
  */
@@ -34,48 +60,137 @@ public class Transaction {
     private final static Set<Transaction> openTransactions = ConcurrentHashMap.newKeySet();
 
     /**
-     * An object to implement the waiting when creating blocking transaction
+     * Admission of blocking transactions
      */
-    private final static Object mutex = new Object();
+    private final static TransactionScheduler scheduler = new TransactionScheduler();
+
+    /**
+     * Saving of asynchronously committed transactions
+     */
+    private final static GroupCommitter committer = new GroupCommitter();
+
+    /**
+     * Count of open optimistic transactions. Versions of separate records are tracked only while it is not zero.
+     */
+    private final static AtomicInteger openOptimisticTransactions = new AtomicInteger();
+
+    /**
+     * Source of numbers of transactions, which define the age of transaction
+     */
+    private final static AtomicLong transactionSequence = new AtomicLong();
+
+    /**
+     * Graph of waiting: waiting transactions and transactions, holding resources, which they wait for.
+     * Guarded by waitForGraphLock.
+     */
+    private final static Map<Transaction, Set<Transaction>> waitForGraph = new HashMap<>();
+
+    /**
+     * Lock, guarding the graph of waiting and the state of waiting of transactions
+     */
+    private final static ReentrantLock waitForGraphLock = new ReentrantLock();
+
+    /**
+     * Timer of expiration of transactions with limited duration and of search for transactions of dead threads
+     */
+    private final static ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+        Thread timerThread = new Thread(task, "imnorm-transaction-timer");
+        timerThread.setDaemon(true);
+        return timerThread;
+    });
 
     static {
-        Thread remover = new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(2000);
-                    openTransactions.stream().filter(Transaction::callingThreadIsDye).forEach(Transaction::rollback);
-                } catch (InterruptedException e) {
-                    throw new InternalImnormException(e);
-                }
-            }
-        });
-        remover.setDaemon(true);
-        remover.start();
+        timer.setRemoveOnCancelPolicy(true);
+        timer.scheduleWithFixedDelay(() -> openTransactions.stream()
+                        .filter(Transaction::callingThreadIsDye)
+                        .forEach(Transaction::rollbackIfOpen),
+                100, 100, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Open waiting transaction with specified time of wait.
      * When in such transaction accesses a blocked cluster,
      * it waits for the resource to be released for the specified time.
-     * If this time is exceeded, a DeadLockException is thrown.
+     * If this time is exceeded, a LockTimeoutException is thrown.
      *
      * @param waitBeforeThrowException Max wait time release cluster
      * @return New transaction
      */
     public static Transaction waitingTransaction(final int waitBeforeThrowException) {
-        return new Transaction(waitBeforeThrowException);
+        return new Transaction(waitBeforeThrowException, Mode.CLUSTER);
     }
 
     /**
      * Open waiting transaction with 250 ms of wait.
      * When in such transaction accesses a blocked cluster,
      * it waits for the resource to be released for the 250 ms.
-     * If this time is exceeded, a DeadLockException is thrown.
+     * If this time is exceeded, a LockTimeoutException is thrown.
      *
      * @return New transaction
      */
     public static Transaction waitingTransaction() {
-        return new Transaction(250);
+        return new Transaction(250, Mode.CLUSTER);
+    }
+
+    /**
+     * Open row-locking transaction with specified time of wait.
+     * Such transaction captures only accessed records, therefore it does not wait for transactions,
+     * which work with other records of the same cluster.
+     * If the waiting time for the release of the record is exceeded, a LockTimeoutException is thrown.
+     *
+     * @param waitBeforeThrowException Max wait time release record
+     * @return New transaction
+     */
+    public static Transaction rowLockingTransaction(final int waitBeforeThrowException) {
+        return new Transaction(waitBeforeThrowException, Mode.ROW);
+    }
+
+    /**
+     * Open row-locking transaction with 250 ms of wait.
+     * Such transaction captures only accessed records, therefore it does not wait for transactions,
+     * which work with other records of the same cluster.
+     * If the waiting time for the release of the record is exceeded, a LockTimeoutException is thrown.
+     *
+     * @return New transaction
+     */
+    public static Transaction rowLockingTransaction() {
+        return new Transaction(250, Mode.ROW);
+    }
+
+    /**
+     * Open optimistic transaction.
+     * Such transaction never waits for other transactions and does not block them.
+     * On commit, it checks that the records read and changed in it were not changed by other transactions.
+     * If the check fails, the transaction is rolled back and an OptimisticLockException is thrown.
+     *
+     * @return New transaction
+     */
+    public static Transaction optimisticTransaction() {
+        return new Transaction(0, Mode.OPTIMISTIC);
+    }
+
+    /**
+     * Start declaration of records, which new transaction will work with.
+     * Clusters of declared records are captured at once when transaction begins,
+     * so declared transactions never fall into a deadlock with each other.
+     * Such transaction waits for release of declared records without time limit.
+     *
+     * @return New declaration of transaction
+     */
+    public static TransactionDeclaration declaredTransaction() {
+        return new TransactionDeclaration(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Start declaration of records, which new transaction will work with.
+     * Clusters of declared records are captured at once when transaction begins,
+     * so declared transactions never fall into a deadlock with each other.
+     *
+     * @param waitBeforeThrowException Max wait time release cluster
+     * @return New declaration of transaction
+     */
+    public static TransactionDeclaration declaredTransaction(final int waitBeforeThrowException) {
+        return new TransactionDeclaration(waitBeforeThrowException);
     }
 
     /**
@@ -89,22 +204,62 @@ public class Transaction {
      * @throws InternalImnormException The thread was abandoned while waiting for a new transaction to be created
      */
     public static Transaction blockingTransaction() {
-        synchronized (mutex) {
-            try {
-                while (!openTransactions.isEmpty()) {
-                    mutex.wait();
-                }
-            } catch (InterruptedException e) {
-                throw new InternalImnormException(e);
-            }
-            return new Transaction(250);
-        }
+        return blockingTransaction(0);
+    }
+
+    /**
+     * Waits for the completion of other blocking transactions, which reserved intersecting repositories,
+     * and of other transactions, which already worked with specified repositories at the moment of call,
+     * and then creates a new one. Blocking transactions with different repositories work simultaneously.
+     * Only blocking transactions are serialised against each other: waiting, row-locking and optimistic
+     * transactions, which come to specified repositories later, are not delayed and can interleave with this one,
+     * so DeadLockException is excluded only while all transactions on these repositories are blocking
+     * and this transaction works only with repositories of its scope.
+     * If repositories are not specified, the transaction waits for the completion of all transactions,
+     * which are open at the moment of call.
+     *
+     * @param scope Repositories, which transaction works with
+     * @return New transaction
+     * @throws InternalImnormException The thread was abandoned while waiting for a new transaction to be created
+     */
+    public static Transaction blockingTransaction(final Repository<?>... scope) {
+        return blockingTransaction(0, scope);
+    }
+
+    /**
+     * Waits for the completion of other blocking transactions, which reserved intersecting repositories,
+     * and of other transactions, which already worked with specified repositories at the moment of call,
+     * and then creates a new one. Blocking transactions with different repositories work simultaneously.
+     * Other kinds of transactions are not delayed by this one and can interleave with it.
+     * Waiting blocking transactions with greater priority are created earlier,
+     * waiting blocking transactions with equal priority are created in order of call.
+     * If repositories are not specified, the transaction waits for the completion of all transactions,
+     * which are open at the moment of call.
+     *
+     * @param priority Priority of creation of transaction
+     * @param scope    Repositories, which transaction works with
+     * @return New transaction
+     * @throws InternalImnormException The thread was abandoned while waiting for a new transaction to be created
+     */
+    public static Transaction blockingTransaction(final int priority, final Repository<?>... scope) {
+        Set<Repository<?>> repositories = Set.of(scope);
+        return scheduler.admit(repositories, priority, openTransactions,
+                () -> new Transaction(250, Mode.CLUSTER, repositories));
+    }
+
+    /**
+     * @param first  Scope of exclusive transaction, where empty set means all repositories
+     * @param second Other scope of exclusive transaction, where empty set means all repositories
+     * @return True, if scopes have common repositories
+     */
+    static boolean intersect(final Set<Repository<?>> first, final Set<Repository<?>> second) {
+        return first.isEmpty() || second.isEmpty() || first.stream().anyMatch(second::contains);
     }
 
     /**
      * Execute current procedure, automatically create, commit and flush or rollback waiting transaction.
      * If repository throw DeadLockException, rollback transaction and procedure retry.
-     * If throw other exception, rollback transaction and return this exception.
+     * If throw other exception, including LockTimeoutException, rollback transaction and return this exception.
      *
      * @param transactionalCall Procedure to be executed.
      *                          May be executed an unlimited number of times until an exception that is not a DeadLockException is thrown,
@@ -118,7 +273,7 @@ public class Transaction {
     /**
      * Execute current procedure, automatically create, commit and flush or rollback waiting transaction.
      * If repository throw DeadLockException, rollback transaction and procedure retry.
-     * If throw other exception, rollback transaction and return this exception.
+     * If throw other exception, including LockTimeoutException, rollback transaction and return this exception.
      *
      * @param transactionalCall        Procedure to be executed.
      *                                 May be executed an unlimited number of times until an exception that is not a DeadLockException is thrown,
@@ -128,22 +283,124 @@ public class Transaction {
      */
     public static Optional<Exception> executeInWaitingTransactionWithRetry(final Consumer<Transaction> transactionalCall,
                                                                            final int waitBeforeThrowException) {
-        Transaction transaction;
+        return executeInWaitingTransactionWithRetry(transactionalCall,
+                RetryPolicy.exponentialBackoff().withWaitTime(waitBeforeThrowException));
+    }
+
+    /**
+     * Execute current procedure, automatically create, commit and flush or rollback waiting transaction.
+     * If repository throw exception, which is allowed to be repeated by specified policy,
+     * rollback transaction and procedure retry after pause, defined by policy, while the policy allows it.
+     * If throw other exception, rollback transaction and return this exception.
+     * Attempts are counted in statistics of the place of call.
+     *
+     * @param transactionalCall Procedure to be executed
+     * @param retryPolicy       Rules of repeating of procedure
+     * @return Exception, if procedure throw exception or attempts are exhausted.
+     * Optional.empty() if procedure completed correctly.
+     */
+    public static Optional<Exception> executeInWaitingTransactionWithRetry(final Consumer<Transaction> transactionalCall,
+                                                                           final RetryPolicy retryPolicy) {
+        return executeWithRetry(transactionalCall, retryPolicy, Mode.CLUSTER);
+    }
+
+    /**
+     * Execute current procedure, automatically create, commit and flush or rollback optimistic transaction.
+     * If commit throw OptimisticLockException, procedure retry after growing randomized pause.
+     * If throw other exception, rollback transaction and return this exception.
+     *
+     * @param transactionalCall Procedure to be executed.
+     *                          May be executed up to 100 times until an exception that is not an OptimisticLockException is thrown,
+     *                          or the transaction completes successfully.
+     * @return Exception, if procedure throw exception or attempts are exhausted.
+     * Optional.empty() if procedure completed correctly.
+     */
+    public static Optional<Exception> executeInOptimisticTransactionWithRetry(final Consumer<Transaction> transactionalCall) {
+        return executeInOptimisticTransactionWithRetry(transactionalCall,
+                RetryPolicy.exponentialBackoff().withMaxAttempts(100));
+    }
+
+    /**
+     * Execute current procedure, automatically create, commit and flush or rollback optimistic transaction.
+     * If commit throw OptimisticLockException, or repository throw other exception, which is allowed
+     * to be repeated by specified policy, procedure retry after pause, defined by policy, while the policy allows it.
+     * If throw other exception, rollback transaction and return this exception.
+     * Waiting time of policy is not used, because optimistic transaction does not wait for clusters.
+     *
+     * @param transactionalCall Procedure to be executed
+     * @param retryPolicy       Rules of repeating of procedure
+     * @return Exception, if procedure throw exception or attempts are exhausted.
+     * Optional.empty() if procedure completed correctly.
+     */
+    public static Optional<Exception> executeInOptimisticTransactionWithRetry(final Consumer<Transaction> transactionalCall,
+                                                                              final RetryPolicy retryPolicy) {
+        return executeWithRetry(transactionalCall, retryPolicy, Mode.OPTIMISTIC);
+    }
+
+    /**
+     * Execute current procedure in transactions of specified mode, while it is aborted by conflicts
+     * and the policy allows repeating. Attempts are counted in statistics of the place of call.
+     *
+     * @param transactionalCall Procedure to be executed
+     * @param retryPolicy       Rules of repeating of procedure
+     * @param mode              Mode of created transactions
+     * @return Exception, if procedure throw exception or attempts are exhausted.
+     * Optional.empty() if procedure completed correctly.
+     */
+    private static Optional<Exception> executeWithRetry(final Consumer<Transaction> transactionalCall,
+                                                        final RetryPolicy retryPolicy, final Mode mode) {
+        RetryStatistics statistics = RetryPolicy.statisticsOfCallSite();
+        statistics.registerCall();
+        long start = System.nanoTime();
+        int attempts = 0;
         while (true) {
-            transaction = new Transaction(waitBeforeThrowException);
+            attempts++;
+            long attemptStart = System.nanoTime();
+            Transaction transaction = new Transaction(mode == Mode.OPTIMISTIC ? 0 : retryPolicy.waitTime(statistics), mode);
             try {
                 transactionalCall.accept(transaction);
                 transaction.commitAndFlush();
+                statistics.registerAttempt(false, System.nanoTime() - attemptStart,
+                        retryPolicy.adaptWaitTime(statistics, attempts, false));
                 return Optional.empty();
-            } catch (DeadLockException ignore) {
-                // In this case transaction already rollback in Cluster.lock
             } catch (Exception e) {
-                transaction.rollback();
-                return Optional.of(e);
+                transaction.rollbackIfOpen();
+                boolean aborted = retryPolicy.isRetryable(e);
+                statistics.registerAttempt(aborted, System.nanoTime() - attemptStart,
+                        retryPolicy.adaptWaitTime(statistics, attempts, e instanceof LockTimeoutException));
+                if (!aborted || !retryPolicy.canRetry(attempts, start)) {
+                    return Optional.of(e);
+                }
+                retryPolicy.pause(attempts);
             }
         }
     }
 
+    /**
+     * @return True, if at least one optimistic transaction is open
+     */
+    static boolean hasOpenOptimisticTransactions() {
+        return openOptimisticTransactions.get() > 0;
+    }
+
+    /**
+     * Ways of work of transaction with clusters
+     */
+    private enum Mode {
+        /**
+         * Transaction captures whole clusters
+         */
+        CLUSTER,
+        /**
+         * Transaction captures separate records
+         */
+        ROW,
+        /**
+         * Transaction captures nothing and checks accessed records on commit
+         */
+        OPTIMISTIC
+    }
+
 
     /**
      * Thread, from which was created this transaction
@@ -156,45 +413,197 @@ public class Transaction {
     private Set<Cluster<?>> blockingClusters = new HashSet<>();
 
     /**
-     * The waiting time for the cluster to be released, if exceeded, it will be thrown DeadLockException
+     * Number of transaction: the greater the number, the younger the transaction
+     */
+    private final long number = transactionSequence.incrementAndGet();
+
+    /**
+     * Thread, which is waiting for release of resource in this transaction now. Guarded by waitForGraphLock.
+     */
+    private Thread waitingThread;
+
+    /**
+     * Indicator of aborting of this transaction to break a cycle of waiting. Guarded by waitForGraphLock.
+     */
+    private boolean aborted = false;
+
+    /**
+     * Indicator of cancellation of this transaction after expiration of its maximum duration
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private volatile boolean expired = false;
+
+    /**
+     * Scheduled expiration of this transaction. Null, if duration of transaction is not limited.
+     * Guarded by completionLock.
+     */
+    private ScheduledFuture<?> lease;
+
+    /**
+     * The waiting time for the cluster to be released, if exceeded, it will be thrown LockTimeoutException
      */
     @Getter(value = AccessLevel.PACKAGE)
     private final int waitTime;
 
+    /**
+     * Way of work of this transaction with clusters
+     */
+    private final Mode mode;
+
+    /**
+     * Repositories, reserved by blocking transaction, where empty set means all repositories.
+     * Null for other transactions.
+     */
+    private final Set<Repository<?>> exclusiveScope;
+
+    /**
+     * Repositories, whose clusters were accessed by this transaction
+     */
+    private final Set<Repository<?>> repositories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Lock, guarding completion of this transaction
+     */
+    private final ReentrantLock completionLock = new ReentrantLock();
+
+    /**
+     * Versions of records, read by optimistic transaction, in every accessed cluster
+     */
+    private final Map<Cluster<?>, Map<Long, Long>> readVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Versions of clusters, all records of which were read by optimistic transaction
+     */
+    private final Map<Cluster<?>, Long> scanVersions = new ConcurrentHashMap<>();
+
+    /**
+     * @param waitBeforeThrow The waiting time for the cluster to be released,
+     *                        if exceeded, it will be thrown LockTimeoutException
+     * @param mode            Way of work of transaction with clusters
+     */
+    private Transaction(final int waitBeforeThrow, final Mode mode) {
+        this(waitBeforeThrow, mode, null);
+    }
+
     /**
      * @param waitBeforeThrow The waiting time for the cluster to be released,
-     *                        if exceeded, it will be thrown DeadLockException
+     *                        if exceeded, it will be thrown LockTimeoutException
+     * @param mode            Way of work of transaction with clusters
+     * @param exclusiveScope  Repositories, reserved by blocking transaction
      */
-    private Transaction(final int waitBeforeThrow) {
+    private Transaction(final int waitBeforeThrow, final Mode mode, final Set<Repository<?>> exclusiveScope) {
         callingThread = Thread.currentThread();
         openTransactions.add(this);
         waitTime = waitBeforeThrow;
+        this.mode = mode;
+        this.exclusiveScope = exclusiveScope;
+        if (mode == Mode.OPTIMISTIC) {
+            openOptimisticTransactions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return True, if transaction captures separate records instead of whole clusters
+     */
+    boolean isRowLocking() {
+        return mode == Mode.ROW;
+    }
+
+    /**
+     * @return True, if transaction captures nothing and checks accessed records on commit
+     */
+    boolean isOptimistic() {
+        return mode == Mode.OPTIMISTIC;
+    }
+
+    /**
+     * Remembers version of the records with specified hash of id on first access to them
+     *
+     * @param cluster Cluster, containing records
+     * @param key     Hash of id of the read records
+     * @param version Version of the last change of the records
+     */
+    void rememberRead(final Cluster<?> cluster, final long key, final long version) {
+        readVersions.computeIfAbsent(cluster, c -> new HashMap<>()).putIfAbsent(key, version);
+    }
+
+    /**
+     * Remembers version of the cluster on first reading of all its records
+     *
+     * @param cluster Read cluster
+     * @param version Version of the last change of records of the cluster
+     */
+    void rememberScan(final Cluster<?> cluster, final long version) {
+        scanVersions.putIfAbsent(cluster, version);
+    }
+
+    /**
+     * @param cluster Cluster, accessed in this transaction
+     * @return Versions of records of this cluster, read in this transaction
+     */
+    Map<Long, Long> getReadVersions(final Cluster<?> cluster) {
+        return readVersions.getOrDefault(cluster, Map.of());
+    }
+
+    /**
+     * @param cluster Cluster, accessed in this transaction
+     * @return Version of this cluster, if all its records were read in this transaction
+     */
+    Optional<Long> getScanVersion(final Cluster<?> cluster) {
+        return Optional.ofNullable(scanVersions.get(cluster));
     }
 
     /**
      * Marks the current cluster as blocked by this transaction.
-     * Other transactions will not be able to access this cluster until the current transaction is completed.
+     * Other transactions will not be able to access this cluster or captured records of this cluster
+     * until the current transaction is completed.
      *
      * @param cluster Cluster, subject to blocking
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
     void captureLock(final Cluster<?> cluster) {
-        if (Objects.isNull(blockingClusters))
-            throw new TransactionWasClosedException();
-        blockingClusters.add(cluster);
+        completionLock.lock();
+        try {
+            if (Objects.isNull(blockingClusters))
+                throw closedException();
+            blockingClusters.add(cluster);
+            repositories.add(cluster.getRepository());
+        } finally {
+            completionLock.unlock();
+        }
     }
 
     /**
-     * Checks the current cluster as blocked by this transaction
+     * Limits duration of this transaction. After expiration of the duration the transaction is rolled back
+     * and its clusters are released, even if its thread is alive or waits for other clusters.
+     * Further access to the expired transaction throws TransactionExpiredException.
      *
-     * @param cluster The cluster being checked
-     * @return True, if this transaction own current cluster
+     * @param maxDuration Maximum duration of this transaction from the current moment
+     * @return This transaction
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
-    boolean lockOwner(final Cluster<?> cluster) {
-        if (Objects.isNull(blockingClusters))
-            throw new TransactionWasClosedException();
-        return blockingClusters.contains(cluster);
+    public Transaction withMaxDuration(final Duration maxDuration) {
+        completionLock.lock();
+        try {
+            if (Objects.isNull(blockingClusters))
+                throw closedException();
+            if (Objects.nonNull(lease)) {
+                lease.cancel(false);
+            }
+            lease = timer.schedule(this::expire, maxDuration.toNanos(), TimeUnit.NANOSECONDS);
+            return this;
+        } finally {
+            completionLock.unlock();
+        }
+    }
+
+    /**
+     * @param scope Scope of exclusive transaction, where empty set means all repositories
+     * @return True, if this transaction works with or reserved repositories of specified scope
+     */
+    boolean conflictsWith(final Set<Repository<?>> scope) {
+        return scope.isEmpty() || repositories.stream().anyMatch(scope::contains)
+                || Objects.nonNull(exclusiveScope) && intersect(exclusiveScope, scope);
     }
 
     /**
@@ -203,24 +612,31 @@ public class Transaction {
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
     public void commit() {
-        unlock(Cluster::commit);
+        commitClusters();
     }
 
     /**
-     * Save all changes, made in this transaction, and flush changes to file data storage
+     * Save all changes, made in this transaction, and flush changes to file data storage.
+     * Only clusters, captured by this transaction or split off from them during commit, are written.
      *
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
     public void commitAndFlush() {
-        synchronized (mutex) {
-            if (Objects.isNull(blockingClusters))
-                throw new TransactionWasClosedException();
-            blockingClusters.forEach(Cluster::commit);
-            blockingClusters.stream().map(Cluster::getRepository).distinct().forEach(Repository::flush);
-            blockingClusters = null;
-            openTransactions.remove(this);
-            mutex.notify();
-        }
+        commitClusters().stream()
+                .collect(Collectors.groupingBy(Cluster::getRepository))
+                .forEach(Repository::flush);
+    }
+
+    /**
+     * Save all changes, made in this transaction, and release its clusters immediately.
+     * Changed clusters are flushed to file data storage in background together with other asynchronous commits.
+     *
+     * @return Future, which completes after flush of changes of this transaction
+     * @throws TransactionWasClosedException Accessing a transaction after it is closed
+     * @throws OptimisticLockException       Records, accessed in optimistic transaction, were changed by other transaction
+     */
+    public CompletableFuture<Void> commitAsync() {
+        return committer.submit(commitClusters());
     }
 
     /**
@@ -229,7 +645,124 @@ public class Transaction {
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
     public void rollback() {
-        unlock(Cluster::rollback);
+        unlock(cluster -> cluster.rollback(this));
+    }
+
+    /**
+     * Registers, that this transaction waits for resource, held by specified transactions,
+     * and searches for a cycle of waiting transactions.
+     * If the cycle is found, the youngest transaction of the cycle is aborted:
+     * its waiting thread is interrupted and it will be rolled back with DeadLockException.
+     *
+     * @param holders Transactions, holding the resource, which this transaction waits for
+     * @return True, if this transaction is aborted or expired
+     */
+    boolean waitFor(final Set<Transaction> holders) {
+        waitForGraphLock.lock();
+        try {
+            if (aborted || expired) {
+                return true;
+            }
+            waitingThread = Thread.currentThread();
+            waitForGraph.put(this, holders);
+            breakCycle();
+            return aborted || expired;
+        } finally {
+            waitForGraphLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces transactions, which this waiting transaction waits for, after capture of the resource
+     * by other transaction. Called from the thread, which captured the resource.
+     * A cycle is not searched here: the capturing transaction does not wait now,
+     * and the cycle through it will be found, when it begins to wait.
+     *
+     * @param holders Transactions, holding the resource, which this transaction waits for
+     */
+    void holdersChanged(final Set<Transaction> holders) {
+        waitForGraphLock.lock();
+        try {
+            if (waitForGraph.containsKey(this)) {
+                waitForGraph.put(this, holders);
+            }
+        } finally {
+            waitForGraphLock.unlock();
+        }
+    }
+
+    /**
+     * Aborts the youngest transaction of the cycle of waiting, which contains this transaction, if it exists.
+     * Waiting thread of aborted transaction is interrupted, unless it is the current thread.
+     */
+    private void breakCycle() {
+        List<Transaction> cycle = findCycle(this, new HashSet<>());
+        if (!cycle.isEmpty()) {
+            Transaction victim = Collections.max(cycle, Comparator.comparingLong(transaction -> transaction.number));
+            victim.aborted = true;
+            waitForGraph.remove(victim);
+            if (victim.waitingThread != Thread.currentThread()) {
+                victim.waitingThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Removes this transaction from the graph of waiting
+     *
+     * @return True, if this transaction was aborted while waiting
+     */
+    boolean stopWaiting() {
+        waitForGraphLock.lock();
+        try {
+            waitForGraph.remove(this);
+            waitingThread = null;
+            boolean wasAborted = aborted;
+            if (wasAborted || expired) {
+                Thread.interrupted();
+                aborted = false;
+            }
+            return wasAborted;
+        } finally {
+            waitForGraphLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for a path in the graph of waiting from specified transaction to this transaction
+     *
+     * @param current Transaction, from which the path is searched
+     * @param visited Already checked transactions
+     * @return Transactions of the found cycle or empty list, if this transaction is not in a cycle
+     */
+    private List<Transaction> findCycle(final Transaction current, final Set<Transaction> visited) {
+        for (Transaction holder : waitForGraph.getOrDefault(current, Set.of())) {
+            if (holder == this) {
+                return new ArrayList<>(List.of(current));
+            }
+            if (visited.add(holder)) {
+                List<Transaction> cycle = findCycle(holder, visited);
+                if (!cycle.isEmpty()) {
+                    cycle.add(current);
+                    return cycle;
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Cancel all changes, made in this transaction, if it is not closed yet
+     */
+    void rollbackIfOpen() {
+        completionLock.lock();
+        try {
+            if (Objects.nonNull(blockingClusters)) {
+                rollback();
+            }
+        } finally {
+            completionLock.unlock();
+        }
     }
 
     /**
@@ -241,6 +774,26 @@ public class Transaction {
         return !callingThread.isAlive();
     }
 
+    /**
+     * Save all changes, made in this transaction
+     *
+     * @return Committed clusters together with clusters, which were split off from them during commit
+     * @throws TransactionWasClosedException Accessing a transaction after it is closed
+     */
+    private Set<Cluster<?>> commitClusters() {
+        Set<Cluster<?>> committed = new HashSet<>();
+        Consumer<Cluster<?>> commitOperation = cluster -> {
+            committed.add(cluster);
+            cluster.commit(this).ifPresent(committed::add);
+        };
+        if (isOptimistic()) {
+            commitOptimistic(commitOperation);
+        } else {
+            unlock(commitOperation);
+        }
+        return committed;
+    }
+
     /**
      * Unlock clusters with current method
      *
@@ -248,14 +801,122 @@ public class Transaction {
      * @throws TransactionWasClosedException Accessing a transaction after it is closed
      */
     private void unlock(Consumer<Cluster<?>> clusterOperation) {
-        synchronized (mutex) {
+        completionLock.lock();
+        try {
             if (Objects.isNull(blockingClusters))
-                throw new TransactionWasClosedException();
+                throw closedException();
             blockingClusters.forEach(clusterOperation);
-            blockingClusters = null;
-            openTransactions.remove(this);
-            mutex.notify();
+            close();
+        } finally {
+            completionLock.unlock();
+        }
+    }
+
+    /**
+     * Checks and applies changes of optimistic transaction.
+     * All repositories, accessed by transaction, are blocked during the check, so the changes are applied atomically.
+     *
+     * @param commitOperation Method, which applies changes of this transaction to cluster
+     * @throws TransactionWasClosedException Accessing a transaction after it is closed
+     * @throws OptimisticLockException       Records, accessed in transaction, were changed by other transaction
+     */
+    private void commitOptimistic(final Consumer<Cluster<?>> commitOperation) {
+        boolean valid;
+        completionLock.lock();
+        try {
+            if (Objects.isNull(blockingClusters))
+                throw closedException();
+            valid = validateInRepositories(repositories.stream()
+                    .sorted(Comparator.comparing(repository -> repository.directory.getAbsolutePath()))
+                    .collect(Collectors.toList()), commitOperation);
+            close();
+        } finally {
+            completionLock.unlock();
+        }
+        if (!valid) {
+            throw new OptimisticLockException();
+        }
+    }
+
+    /**
+     * Consistently blocks specified repositories, then checks records of accessed clusters
+     * and either applies or cancels changes of this transaction
+     *
+     * @param repositories    Repositories, which are not blocked yet
+     * @param commitOperation Method, which applies changes of this transaction to cluster
+     * @return True, if changes were applied
+     */
+    private boolean validateInRepositories(final List<Repository<?>> repositories,
+                                           final Consumer<Cluster<?>> commitOperation) {
+        if (repositories.isEmpty()) {
+            if (blockingClusters.stream().allMatch(cluster -> cluster.validate(this))) {
+                blockingClusters.forEach(commitOperation);
+                return true;
+            }
+            blockingClusters.forEach(cluster -> cluster.rollback(this));
+            return false;
+        }
+        Repository<?> repository = repositories.remove(0);
+        repository.repositoryLock.lock();
+        try {
+            return validateInRepositories(repositories, commitOperation);
+        } finally {
+            repository.repositoryLock.unlock();
+        }
+    }
+
+    /**
+     * Cancels this transaction after expiration of its maximum duration.
+     * The transaction is closed at once, so its thread can not capture new clusters,
+     * and the waiting thread of the transaction is woken up.
+     * Captured clusters are released outside of completionLock, because the thread of the transaction
+     * can wait for completionLock, holding the lock of repository.
+     */
+    private void expire() {
+        Set<Cluster<?>> clusters;
+        completionLock.lock();
+        try {
+            if (Objects.isNull(blockingClusters)) {
+                return;
+            }
+            expired = true;
+            clusters = blockingClusters;
+            close();
+        } finally {
+            completionLock.unlock();
+        }
+        waitForGraphLock.lock();
+        try {
+            if (Objects.nonNull(waitingThread)) {
+                waitingThread.interrupt();
+            }
+        } finally {
+            waitForGraphLock.unlock();
+        }
+        clusters.forEach(cluster -> cluster.rollback(this));
+    }
+
+    /**
+     * @return Exception about access to closed transaction
+     */
+    TransactionWasClosedException closedException() {
+        return expired ? new TransactionExpiredException() : new TransactionWasClosedException();
+    }
+
+    /**
+     * Marks this transaction as closed and wakes up waiting blocking transaction
+     */
+    private void close() {
+        if (Objects.nonNull(lease)) {
+            lease.cancel(false);
+        }
+        blockingClusters = null;
+        readVersions.clear();
+        scanVersions.clear();
+        if (openTransactions.remove(this) && isOptimistic()) {
+            openOptimisticTransactions.decrementAndGet();
         }
+        scheduler.released(openTransactions);
     }
 }
 
@@ -0,0 +1,121 @@
+package io.github.alekseykn.imnorm;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Declaration of records, which transaction will work with.
+ * When transaction begins, clusters of all declared records are captured at once in a global order:
+ * repositories are ordered by their directories, clusters of one repository are ordered by their first keys.
+ * Therefore, declared transactions never wait for each other in a cycle and do not need retries.
+ * Records, which were not declared, are still available in such transaction, but access to them may wait
+ * like in a waiting transaction.
+ *
+ * @author Aleksey-Kn
+ */
+public class TransactionDeclaration {
+    /**
+     * Hashes of id of declared records for every repository
+     */
+    private final Map<Repository<?>, NavigableSet<Long>> hashes =
+            new TreeMap<>(Comparator.comparing(repository -> repository.directory.getAbsolutePath()));
+
+    /**
+     * Declared ranges of hashes of id for every repository
+     */
+    private final Map<Repository<?>, List<Map.Entry<Long, Long>>> ranges = new HashMap<>();
+
+    /**
+     * The waiting time for the cluster to be released in started transaction
+     */
+    private final int waitTime;
+
+    /**
+     * @param waitBeforeThrow The waiting time for the cluster to be released in started transaction
+     */
+    TransactionDeclaration(final int waitBeforeThrow) {
+        waitTime = waitBeforeThrow;
+    }
+
+    /**
+     * Declares records with specified id
+     *
+     * @param repository Repository, containing records
+     * @param ids        ID of declared records
+     * @return This declaration
+     */
+    public TransactionDeclaration withIds(final Repository<?> repository, final Object... ids) {
+        NavigableSet<Long> repositoryHashes = hashes.computeIfAbsent(repository, r -> new TreeSet<>());
+        for (Object id : ids) {
+            repositoryHashes.add(repository.getHashFromId(id));
+        }
+        return this;
+    }
+
+    /**
+     * Declares records, which id is inside the specified range.
+     * The range makes sense only for id, which order is kept by hash, such as integers.
+     *
+     * @param repository Repository, containing records
+     * @param from       Lower bound of range of id, inclusive
+     * @param to         Upper bound of range of id, exclusive
+     * @return This declaration
+     */
+    public TransactionDeclaration withIdRange(final Repository<?> repository, final Object from, final Object to) {
+        hashes.computeIfAbsent(repository, r -> new TreeSet<>());
+        ranges.computeIfAbsent(repository, r -> new ArrayList<>())
+                .add(Map.entry(repository.getHashFromId(from), repository.getHashFromId(to)));
+        return this;
+    }
+
+    /**
+     * Opens transaction and captures clusters of all declared records
+     *
+     * @return New transaction
+     * @throws io.github.alekseykn.imnorm.exceptions.DeadLockException    Transaction was aborted,
+     *                                                                     because not declared transaction waits for it
+     * @throws io.github.alekseykn.imnorm.exceptions.LockTimeoutException The waiting time has been exceeded
+     */
+    public Transaction begin() {
+        Transaction transaction = Transaction.waitingTransaction(waitTime);
+        hashes.forEach((repository, repositoryHashes) -> {
+            NavigableSet<Long> capturedHashes = new TreeSet<>(repositoryHashes);
+            ranges.getOrDefault(repository, List.of()).forEach(range -> {
+                capturedHashes.add(range.getKey());
+                capturedHashes.addAll(repository.findClusterKeys(range.getKey(), range.getValue()));
+            });
+            repository.captureClusters(capturedHashes, transaction);
+        });
+        return transaction;
+    }
+
+    /**
+     * Execute current procedure in declared transaction, automatically commit and flush or rollback it.
+     * If procedure throw exception, rollback transaction and return this exception.
+     *
+     * @param transactionalCall Procedure to be executed
+     * @return Exception, if procedure throw exception. Optional.empty() if procedure completed correctly.
+     */
+    public Optional<Exception> execute(final Consumer<Transaction> transactionalCall) {
+        Transaction transaction = null;
+        try {
+            transaction = begin();
+            transactionalCall.accept(transaction);
+            transaction.commitAndFlush();
+            return Optional.empty();
+        } catch (Exception e) {
+            if (transaction != null) {
+                transaction.rollbackIfOpen();
+            }
+            return Optional.of(e);
+        }
+    }
+}
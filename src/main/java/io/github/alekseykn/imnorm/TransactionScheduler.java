@@ -0,0 +1,156 @@
+package io.github.alekseykn.imnorm;
+
+import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission of exclusive transactions.
+ * Exclusive transaction is opened only when no open transaction works with repositories of its scope.
+ * Waiting requests are served in order of priority, and requests with equal priority are served in order of arrival.
+ * Request does not overtake earlier requests with intersecting scope, but requests with independent scopes
+ * are admitted in parallel.
+ * Completion of transactions takes the lock of scheduler only when some request is waiting.
+ *
+ * @author Aleksey-Kn
+ */
+final class TransactionScheduler {
+    /**
+     * Lock, guarding the queue of requests
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Waiting requests in order of service
+     */
+    private final List<Request> queue = new ArrayList<>();
+
+    /**
+     * Count of waiting requests, checked on completion of transactions without taking the lock
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Number of the last arrived request
+     */
+    private long arrivals = 0;
+
+    /**
+     * Waits, while open transactions or earlier requests intersect with specified scope, and opens new transaction
+     *
+     * @param scope            Repositories of exclusive transaction. Empty set means all repositories.
+     * @param priority         Priority of request: the greater the priority, the earlier the request is served
+     * @param openTransactions Currently open transactions
+     * @param opening          Creation of admitted transaction
+     * @return New transaction
+     * @throws InternalImnormException The thread was interrupted while waiting
+     */
+    Transaction admit(final Set<Repository<?>> scope, final int priority,
+                      final Collection<Transaction> openTransactions, final Supplier<Transaction> opening) {
+        lock.lock();
+        waiting.incrementAndGet();
+        Request request = new Request(scope, priority, arrivals++, lock.newCondition());
+        int position = Collections.binarySearch(queue, request, Request.ORDER);
+        queue.add(-position - 1, request);
+        try {
+            while (!admissible(request, openTransactions)) {
+                request.admission.await();
+            }
+            queue.remove(request);
+            return opening.get();
+        } catch (InterruptedException e) {
+            queue.remove(request);
+            throw new InternalImnormException(e);
+        } finally {
+            waiting.decrementAndGet();
+            signalAdmissible(openTransactions);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up requests, which can be admitted after completion of transaction
+     *
+     * @param openTransactions Currently open transactions
+     */
+    void released(final Collection<Transaction> openTransactions) {
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                signalAdmissible(openTransactions);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wakes up all requests, which can be admitted now
+     *
+     * @param openTransactions Currently open transactions
+     */
+    private void signalAdmissible(final Collection<Transaction> openTransactions) {
+        queue.stream()
+                .filter(request -> admissible(request, openTransactions))
+                .forEach(request -> request.admission.signal());
+    }
+
+    /**
+     * @param request          Checked request
+     * @param openTransactions Currently open transactions
+     * @return True, if neither open transaction nor earlier request intersects with scope of request
+     */
+    private boolean admissible(final Request request, final Collection<Transaction> openTransactions) {
+        for (Request earlier : queue) {
+            if (earlier == request) {
+                break;
+            }
+            if (Transaction.intersect(earlier.scope, request.scope)) {
+                return false;
+            }
+        }
+        return openTransactions.stream().noneMatch(transaction -> transaction.conflictsWith(request.scope));
+    }
+
+    /**
+     * Request of opening of exclusive transaction
+     */
+    @AllArgsConstructor
+    private static final class Request {
+        /**
+         * Order of service of requests: by priority descending, then by arrival
+         */
+        private static final Comparator<Request> ORDER = Comparator.<Request>comparingInt(request -> -request.priority)
+                .thenComparingLong(request -> request.arrival);
+
+        /**
+         * Repositories of requested transaction. Empty set means all repositories.
+         */
+        private final Set<Repository<?>> scope;
+
+        /**
+         * Priority of request
+         */
+        private final int priority;
+
+        /**
+         * Number of arrival of request
+         */
+        private final long arrival;
+
+        /**
+         * Condition, on which request waits for admission
+         */
+        private final Condition admission;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.alekseykn.imnorm.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks field, for which repository keeps in RAM the index from value of field to ids of records.
+ * Search by condition of equality of this field reads only records from the index instead of all records.
+ * Values of field should have equals, consistent with compareTo.
+ *
+ * @author Aleksey-Kn
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Indexed {
+}
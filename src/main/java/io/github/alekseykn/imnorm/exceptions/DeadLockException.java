@@ -1,7 +1,7 @@
 package io.github.alekseykn.imnorm.exceptions;
 
 public class DeadLockException extends RuntimeException {
-    public DeadLockException(int firstClusterKey) {
+    public DeadLockException(long firstClusterKey) {
         super("Multiple access to cluster " + firstClusterKey);
     }
 }
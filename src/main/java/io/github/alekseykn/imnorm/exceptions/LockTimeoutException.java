@@ -0,0 +1,7 @@
+package io.github.alekseykn.imnorm.exceptions;
+
+public class LockTimeoutException extends RuntimeException {
+    public LockTimeoutException(long firstClusterKey) {
+        super("Waiting time for release of cluster " + firstClusterKey + " is exceeded");
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.alekseykn.imnorm.exceptions;
+
+public class OptimisticLockException extends RuntimeException {
+    public OptimisticLockException() {
+        super("Records, accessed in optimistic transaction, were changed by other transaction");
+    }
+}
@@ -0,0 +1,4 @@
+package io.github.alekseykn.imnorm.exceptions;
+
+public class TransactionExpiredException extends TransactionWasClosedException {
+}
@@ -3,11 +3,14 @@ package io.github.alekseykn.imnorm.utils;
 import com.google.gson.Gson;
 import io.github.alekseykn.imnorm.exceptions.InternalImnormException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -37,20 +40,40 @@ public class ClusterFileManipulator<Record> {
      * @param clusterPath Address of the cluster file in the file system
      * @return Indexed collection of records
      */
-    public TreeMap<Integer, Map<Object, Record>> read(final Path clusterPath) {
+    public TreeMap<Long, Map<Object, Record>> read(final Path clusterPath) {
         try (Stream<String> lines = Files.lines(clusterPath)) {
-            TreeMap<Integer, Map<Object, Record>> tempClusterData = new TreeMap<>();
-            lines.forEach(line -> {
-                int index = line.indexOf(':');
-                tempClusterData.put(Integer.parseInt(line.substring(0, index)),
-                        splitRecordsFromCurrentHash(line.substring(index + 1)));
-            });
-            return tempClusterData;
+            return parse(lines);
         } catch (IOException e) {
             throw new InternalImnormException(e);
         }
     }
 
+    /**
+     * Loads cluster data from bytes in the markup of file system
+     *
+     * @param bytes Cluster records, written by {@link #toBytes(TreeMap)}
+     * @return Indexed collection of records
+     */
+    public TreeMap<Long, Map<Object, Record>> fromBytes(final byte[] bytes) {
+        return parse(new String(bytes, StandardCharsets.UTF_8).lines());
+    }
+
+    /**
+     * Collects records from lines with the markup of file system
+     *
+     * @param lines Lines of cluster data
+     * @return Indexed collection of records
+     */
+    private TreeMap<Long, Map<Object, Record>> parse(final Stream<String> lines) {
+        TreeMap<Long, Map<Object, Record>> tempClusterData = new TreeMap<>();
+        lines.forEach(line -> {
+            int index = line.indexOf(':');
+            tempClusterData.put(Long.parseLong(line.substring(0, index)),
+                    splitRecordsFromCurrentHash(line.substring(index + 1)));
+        });
+        return tempClusterData;
+    }
+
     /**
      * Splits and collects records with the same hash
      *
@@ -88,15 +111,37 @@ public class ClusterFileManipulator<Record> {
      * @param clusterFile Address in file system for write data
      * @param data        Cluster records
      */
-    public void write(final File clusterFile, final TreeMap<Integer, Map<Object, Record>> data) {
+    public void write(final File clusterFile, final TreeMap<Long, Map<Object, Record>> data) {
         try (PrintWriter printWriter = new PrintWriter(clusterFile)) {
-            data.forEach((hash, values) -> {
-                printWriter.print(hash + ":");
-                values.values().forEach(record -> printWriter.print(gson.toJson(record).concat("#")));
-                printWriter.println();
-            });
+            print(printWriter, data);
         } catch (FileNotFoundException e) {
             throw new InternalImnormException(e);
         }
     }
+
+    /**
+     * Write cluster data to bytes with the markup of file system
+     *
+     * @param data Cluster records
+     * @return Cluster records in UTF-8
+     */
+    public byte[] toBytes(final TreeMap<Long, Map<Object, Record>> data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintWriter printWriter = new PrintWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            print(printWriter, data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param printWriter Receiver of cluster data
+     * @param data        Cluster records
+     */
+    private void print(final PrintWriter printWriter, final TreeMap<Long, Map<Object, Record>> data) {
+        data.forEach((hash, values) -> {
+            printWriter.print(hash + ":");
+            values.values().forEach(record -> printWriter.print(gson.toJson(record).concat("#")));
+            printWriter.println();
+        });
+    }
 }
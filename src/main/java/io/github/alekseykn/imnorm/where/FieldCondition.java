@@ -6,6 +6,7 @@ import io.github.alekseykn.imnorm.utils.FieldUtil;
 
 import java.lang.reflect.Field;
 import java.util.Comparator;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 /**
@@ -25,6 +26,11 @@ public final class FieldCondition<Fld, Entity> implements Condition<Entity> {
      */
     private final Predicate<Fld> condition;
 
+    /**
+     * The operand, to which the entity field must be equal, or null, if condition is not a simple equality
+     */
+    private final Object equalityOperand;
+
     /**
      * Set input predicate as condition for comparison
      *
@@ -34,6 +40,7 @@ public final class FieldCondition<Fld, Entity> implements Condition<Entity> {
     public FieldCondition(final String fieldName, final Predicate<Fld> predicate) {
         this.fieldName = fieldName;
         condition = predicate;
+        equalityOperand = null;
     }
 
     /**
@@ -46,6 +53,7 @@ public final class FieldCondition<Fld, Entity> implements Condition<Entity> {
     public FieldCondition(final String fieldName, final CompareMode compareMode, final Comparable<Fld> origin) {
         this.fieldName = fieldName;
         condition = field -> compareMode.checkCondition(origin, field);
+        equalityOperand = compareMode == CompareMode.EQUALS ? origin : null;
     }
 
     /**
@@ -59,6 +67,22 @@ public final class FieldCondition<Fld, Entity> implements Condition<Entity> {
     public FieldCondition(final String fieldName, final CompareMode compareMode, final Fld origin, final Comparator<Fld> comparator) {
         this.fieldName = fieldName;
         condition = field -> compareMode.checkCondition(origin, field, comparator);
+        equalityOperand = null;
+    }
+
+    /**
+     * @return Name of the entity field for comparison
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return The operand, to which the entity field must be equal,
+     * or empty, if condition is not equality by natural order of field
+     */
+    public Optional<Object> getEqualityOperand() {
+        return Optional.ofNullable(equalityOperand);
     }
 
     /**
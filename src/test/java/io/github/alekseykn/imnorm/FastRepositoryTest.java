@@ -3,6 +3,7 @@ package io.github.alekseykn.imnorm;
 import org.junit.jupiter.api.BeforeAll;
 import support.dto.Dto;
 import support.dto.DtoWithGenerateId;
+import support.dto.IndexedDto;
 
 public class FastRepositoryTest extends RepositoryTest{
     @BeforeAll
@@ -10,5 +11,6 @@ public class FastRepositoryTest extends RepositoryTest{
         repository = DataStorage.getDataStorage().getStrictlyFastRepositoryForClass(Dto.class);
         withGenerateIdRepository = DataStorage.getDataStorage()
                 .getStrictlyFastRepositoryForClass(DtoWithGenerateId.class);
+        indexedRepository = DataStorage.getDataStorage().getStrictlyFastRepositoryForClass(IndexedDto.class);
     }
 }
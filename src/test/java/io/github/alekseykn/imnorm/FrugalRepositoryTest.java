@@ -1,8 +1,30 @@
 package io.github.alekseykn.imnorm;
 
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import io.github.alekseykn.imnorm.utils.ClusterFileManipulator;
+import io.github.alekseykn.imnorm.where.CompareMode;
+import io.github.alekseykn.imnorm.where.FieldCondition;
 import support.dto.Dto;
 import support.dto.DtoWithGenerateId;
+import support.dto.IndexedDto;
+import support.dto.LongDto;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class FrugalRepositoryTest extends RepositoryTest {
     @BeforeAll
@@ -11,5 +33,373 @@ public class FrugalRepositoryTest extends RepositoryTest {
                 .getStrictlyFrugalRepositoryForClass(Dto.class, 10);
         withGenerateIdRepository = DataStorage.getDataStorage()
                 .getStrictlyFrugalRepositoryForClass(DtoWithGenerateId.class, 10);
+        indexedRepository = DataStorage.getDataStorage()
+                .getStrictlyFrugalRepositoryForClass(IndexedDto.class, 10);
+    }
+
+    @Test
+    void largeTransactionShouldSpillCopiesOfClustersAndReadThemBack() {
+        File directory = Path.of("data", "spilled").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+
+        Transaction transaction = Transaction.waitingTransaction();
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000), transaction));
+        assertThat(countSpilledCopies()).isGreaterThan(0);
+        assertThat(smallRepository.findAll(transaction)).hasSize(21);
+        transaction.commit();
+        assertThat(smallRepository.findAll()).hasSize(21);
+
+        Transaction rollbackTransaction = Transaction.waitingTransaction();
+        Stream.iterate(0, id -> id + 1)
+                .limit(21)
+                .forEach(id -> smallRepository.deleteById(id * 1000, rollbackTransaction));
+        rollbackTransaction.rollback();
+        assertThat(countSpilledCopies()).isZero();
+        assertThat(smallRepository.findAll()).hasSize(21);
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void findAllByIdShouldLoadEachDroppedClusterOnce() {
+        File directory = Path.of("data", "batched").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+        List<Integer> ids = Stream.iterate(20_000, id -> id - 500)
+                .limit(41)
+                .collect(Collectors.toList());
+
+        assertThat(smallRepository.findAllById(ids)).hasSize(21)
+                .allSatisfy((id, record) -> assertThat(record.getId()).isEqualTo(id));
+        Transaction transaction = Transaction.waitingTransaction();
+        assertThat(smallRepository.findAllById(ids, transaction)).hasSize(21);
+        transaction.commit();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    @SneakyThrows
+    void deleteByIdRangeShouldDeleteFilesOfInnerClusters() {
+        File directory = Path.of("data", "ranged").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+        smallRepository.flush();
+
+        smallRepository.deleteByIdRange(3000, 15_500);
+
+        assertThat(smallRepository.findAll()).extracting(Dto::getId)
+                .containsOnly(0, 1000, 2000, 16_000, 17_000, 18_000, 19_000, 20_000);
+        try (Stream<Path> files = Files.list(directory.toPath())) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .contains("0", "2000", "16000", "20000")
+                    .doesNotContain("3000", "9000", "15000");
+        }
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    @SneakyThrows
+    void asyncRepositoryShouldUploadDroppedClusters() {
+        File directory = Path.of("data", "async").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+        AsyncRepository<Dto> asyncRepository = new AsyncRepository<>(smallRepository, ForkJoinPool.commonPool());
+
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+        assertThat(asyncRepository.findById(3000).get()).contains(new Dto(3000));
+        assertThat(asyncRepository.findAll(new FieldCondition<>("id", CompareMode.LESS, 5000)).get()).hasSize(5);
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void publishAllShouldNotUploadDroppedClusters() {
+        File directory = Path.of("data", "published").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        assertThat(collect(smallRepository.publishAll(), 2)).hasSize(21);
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void streamShouldReadDroppedClustersOnDemand() {
+        File directory = Path.of("data", "streamed").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        assertThat(smallRepository.stream().limit(3).map(Dto::getId)).containsExactly(0, 1000, 2000);
+        assertThat(smallRepository.stream().parallel().map(Dto::getId).collect(Collectors.toList()))
+                .containsExactlyElementsOf(Stream.iterate(0, id -> id + 1000).limit(21).collect(Collectors.toList()));
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void findPageShouldNotUploadDroppedClusters() {
+        File directory = Path.of("data", "paged").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        Page<Dto> first = smallRepository.findPage(null, 2);
+        Page<Dto> second = smallRepository.findPage(first.getNextCursor().orElseThrow(), 2);
+
+        assertThat(first.getRecords()).extracting(Dto::getId).containsExactly(0, 1000);
+        assertThat(second.getRecords()).extracting(Dto::getId).containsExactly(2000, 3000);
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void findByIdRangeShouldReadOnlyOverlappingClusters() {
+        File directory = Path.of("data", "ranged").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        assertThat(smallRepository.findByIdRange(2500, 6000)).extracting(Dto::getId).containsExactly(3000, 4000, 5000);
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void sizeShouldBeReadFromSavedQuantitiesOfRecordsOfClusters() {
+        File directory = Path.of("data", "sized").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+        smallRepository.flush();
+
+        assertThat(new File(directory, "_sizes.imnorm")).exists();
+        Repository<Dto> reopenedRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        assertThat(reopenedRepository.size()).isEqualTo(21);
+        reopenedRepository.deleteByIdRange(0, 5000);
+        assertThat(reopenedRepository.size()).isEqualTo(16);
+
+        reopenedRepository.save(new Dto(20_500));
+        reopenedRepository.flush();
+        assertThat(new File(directory, "_sizes.imnorm")).exists();
+        reopenedRepository.save(new Dto(5001));
+        reopenedRepository.save(new Dto(6001));
+        reopenedRepository.save(new Dto(7001));
+        assertThat(new File(directory, "_sizes.imnorm")).doesNotExist();
+        assertThat(reopenedRepository.size()).isEqualTo(20);
+        assertThat(new FrugalRepository<>(Dto.class, directory, 2).size()).isEqualTo(18);
+
+        reopenedRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    @SneakyThrows
+    void clustersOfLongIdsWithLegacyKeysShouldBeMigrated() {
+        File directory = Path.of("data", "legacy").toFile();
+        assertThat(directory.mkdir()).isTrue();
+        writeLegacyClusters(directory);
+
+        Repository<LongDto> longRepository = new FrugalRepository<>(LongDto.class, directory, 2);
+
+        assertThat(new File(directory, "_keys.imnorm")).exists();
+        assertThat(longRepository.size()).isEqualTo(4);
+        assertThat(longRepository.findByIdRange(-10L, 5_500_000_000L)).extracting(LongDto::getId)
+                .containsExactly(-3L, 7L, 5_000_000_000L);
+        assertThat(longRepository.findById(6_000_000_000L)).contains(new LongDto(6_000_000_000L));
+
+        longRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    @SneakyThrows
+    void interruptedMigrationOfKeysShouldBeRepeatedOrContinued() {
+        File directory = Path.of("data", "interrupted").toFile();
+        File migrated = new File(directory, "_keys_migration");
+        for (String stage : List.of("_keys_migration", "_keys_written.imnorm", "_keys_replaced.imnorm")) {
+            assertThat(migrated.mkdirs()).isTrue();
+            writeLegacyClusters(directory);
+            if (stage.equals("_keys_migration")) {
+                assertThat(new File(migrated, "_0").createNewFile()).isTrue();
+            } else {
+                writeLegacyClusters(migrated);
+                for (File legacy : Objects.requireNonNull(migrated.listFiles())) {
+                    TreeMap<Long, Map<Object, LongDto>> records = new TreeMap<>();
+                    manipulator().read(legacy.toPath()).values().forEach(values -> values.values()
+                            .forEach(record -> records.put(record.getId(), Map.of(record.getId(), record))));
+                    assertThat(legacy.delete()).isTrue();
+                    manipulator().write(new File(migrated, records.firstKey().toString()), records);
+                }
+                assertThat(new File(directory, stage).createNewFile()).isTrue();
+            }
+            if (stage.equals("_keys_replaced.imnorm")) {
+                for (File legacy : Objects.requireNonNull(directory.listFiles(File::isFile))) {
+                    assertThat(legacy.getName().startsWith("_") || legacy.delete()).isTrue();
+                }
+            }
+
+            Repository<LongDto> longRepository = new FrugalRepository<>(LongDto.class, directory, 2);
+
+            assertThat(directory.list()).containsOnly("_keys.imnorm", "-3", "7", "5000000000", "6000000000");
+            assertThat(longRepository.findByIdRange(-10L, 5_500_000_000L)).extracting(LongDto::getId)
+                    .containsExactly(-3L, 7L, 5_000_000_000L);
+            longRepository.deleteAll();
+            assertThat(directory.list()).containsOnly("_keys.imnorm");
+            assertThat(new File(directory, "_keys.imnorm").delete()).isTrue();
+        }
+        assertThat(directory.delete()).isTrue();
+    }
+
+    private static void deleteDirectory(final File directory) {
+        assertThat(directory.list()).containsOnly("_keys.imnorm");
+        assertThat(new File(directory, "_keys.imnorm").delete()).isTrue();
+        assertThat(directory.delete()).isTrue();
+    }
+
+    @SneakyThrows
+    private static ClusterFileManipulator<LongDto> manipulator() {
+        Field id = LongDto.class.getDeclaredField("id");
+        id.setAccessible(true);
+        return new ClusterFileManipulator<>(LongDto.class, id);
+    }
+
+    private static void writeLegacyClusters(final File directory) {
+        for (long legacyId : List.of(-3L, 7L, 5_000_000_000L, 6_000_000_000L)) {
+            TreeMap<Long, Map<Object, LongDto>> legacyCluster = new TreeMap<>();
+            legacyCluster.put((long) Long.hashCode(legacyId), Map.of(legacyId, new LongDto(legacyId)));
+            manipulator().write(new File(directory, Integer.toString(Long.hashCode(legacyId))), legacyCluster);
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void droppedClustersShouldBeReadFromSerializedCopiesInsteadOfFiles() {
+        File directory = Path.of("data", "serialized").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2, 1 << 20);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        assertThat(smallRepository.isInRam(3000)).isFalse();
+        Files.delete(new File(directory, smallRepository.findFloorClusterKey(3000).orElseThrow().toString()).toPath());
+        assertThat(smallRepository.findAll()).hasSize(21);
+        assertThat(smallRepository.findById(3000)).contains(new Dto(3000));
+        assertThat(smallRepository.isInRam(3000)).isTrue();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void clustersReadInOptimisticTransactionShouldNotBeDroppedBeforeCommit() {
+        File directory = Path.of("data", "optimistic").toFile();
+        Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+        Transaction transaction = Transaction.optimisticTransaction();
+        assertThat(smallRepository.findById(0, transaction)).contains(new Dto(0));
+        Stream.iterate(1, id -> id + 1)
+                .limit(20)
+                .forEach(id -> assertThat(smallRepository.findById(id * 1000)).contains(new Dto(id * 1000)));
+        assertThat(smallRepository.isInRam(0)).isTrue();
+        transaction.commit();
+        assertThat(smallRepository.isInRam(0)).isTrue();
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void serializedCopiesShouldNotExceedLimitOfBytes() {
+        File directory = Path.of("data", "limited").toFile();
+        for (long maxSerializedBytes : List.of(8L, 200L)) {
+            Repository<Dto> smallRepository = new FrugalRepository<>(Dto.class, directory, 2, maxSerializedBytes);
+            Stream.iterate(20, id -> id - 1)
+                    .limit(21)
+                    .forEach(id -> smallRepository.save(new Dto(id * 1000)));
+
+            assertThat(smallRepository.findAll()).hasSize(21);
+            assertThat(smallRepository.findById(3000)).contains(new Dto(3000));
+            smallRepository.deleteAll();
+        }
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void indexOfFieldShouldBeBuiltFromFilesAndUploadOnlyClustersOfFoundRecords() {
+        File directory = Path.of("data", "indexed").toFile();
+        Repository<IndexedDto> smallRepository = new FrugalRepository<>(IndexedDto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new IndexedDto(id * 1000, id % 2 == 0 ? "even" : "odd")));
+        smallRepository.save(new IndexedDto(3000, "three"));
+        smallRepository.flush();
+
+        Repository<IndexedDto> reopenedRepository = new FrugalRepository<>(IndexedDto.class, directory, 2);
+        assertThat(reopenedRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "three")))
+                .extracting(IndexedDto::getId).containsExactly(3000);
+        assertThat(reopenedRepository.isInRam(3000)).isTrue();
+        assertThat(reopenedRepository.isInRam(5000)).isFalse();
+        assertThat(reopenedRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "odd"))).hasSize(9);
+
+        reopenedRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @Test
+    void deleteOfDroppedClustersShouldRemoveTheirRecordsFromIndex() {
+        File directory = Path.of("data", "indexedDropped").toFile();
+        FrugalRepository<IndexedDto> smallRepository = new FrugalRepository<>(IndexedDto.class, directory, 2);
+        Stream.iterate(20, id -> id - 1)
+                .limit(21)
+                .forEach(id -> smallRepository.save(new IndexedDto(id * 1000, id % 2 == 0 ? "even" : "odd")));
+        assertThat(smallRepository.isInRam(5000)).isFalse();
+
+        smallRepository.deleteByIdRange(0, 10_000);
+        assertThat(smallRepository.indexes.findIds(new FieldCondition<>("name", CompareMode.EQUALS, "odd")))
+                .contains(Set.of(11_000, 13_000, 15_000, 17_000, 19_000));
+        assertThat(smallRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "even")))
+                .extracting(IndexedDto::getId).containsOnly(10_000, 12_000, 14_000, 16_000, 18_000, 20_000);
+
+        smallRepository.deleteAll();
+        deleteDirectory(directory);
+    }
+
+    @SneakyThrows
+    private long countSpilledCopies() {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("imnorm-spilled-")).count();
+        }
     }
 }
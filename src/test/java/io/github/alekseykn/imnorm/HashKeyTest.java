@@ -72,4 +72,33 @@ public abstract class HashKeyTest {
         assertThat(repository.deleteById(key).orElseThrow().getId()).isEqualTo(key);
         assertThat(repository.findAll()).isEmpty();
     }
+
+    @Test
+    void recordsWithEqualHashesOfKeyShouldBeKeptApart() {
+        repository.saveAll(List.of(new StringDto("Aa"), new StringDto("BB"), new StringDto("C#")));
+        repository.save(new StringDto("BB"));
+        repository.flush();
+
+        assertThat(repository.findById("Aa").orElseThrow().getId()).isEqualTo("Aa");
+        assertThat(repository.findById("BB").orElseThrow().getId()).isEqualTo("BB");
+        assertThat(repository.size()).isEqualTo(3);
+
+        assertThat(repository.deleteById("Aa").orElseThrow().getId()).isEqualTo("Aa");
+        assertThat(repository.deleteById("Aa")).isEmpty();
+        assertThat(repository.deleteById("C#").orElseThrow().getId()).isEqualTo("C#");
+        assertThat(repository.findAll()).extracting(StringDto::getId).containsExactly("BB");
+    }
+
+    @Test
+    void findPageShouldNotRepeatOrSkipRecordsWithEqualHashesOfKey() {
+        repository.saveAll(List.of(new StringDto("C#"), new StringDto("BB"), new StringDto("Aa"), new StringDto("x")));
+
+        Page<StringDto> first = repository.findPage(null, 2);
+        repository.deleteById("Aa");
+        repository.save(new StringDto("Aa"));
+        Page<StringDto> second = repository.findPage(first.getNextCursor().orElseThrow(), 2);
+
+        assertThat(first.getRecords()).extracting(StringDto::getId).containsExactly("x", "Aa");
+        assertThat(second.getRecords()).extracting(StringDto::getId).containsExactly("BB", "C#");
+    }
 }
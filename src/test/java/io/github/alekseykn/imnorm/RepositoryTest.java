@@ -1,33 +1,44 @@
 package io.github.alekseykn.imnorm;
 
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import support.dto.Dto;
 import support.dto.DtoWithGenerateId;
+import support.dto.IndexedDto;
 import io.github.alekseykn.imnorm.where.CompareMode;
 import io.github.alekseykn.imnorm.where.FieldCondition;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 abstract class RepositoryTest {
     protected static Repository<Dto> repository;
     protected static Repository<DtoWithGenerateId> withGenerateIdRepository;
+    protected static Repository<IndexedDto> indexedRepository;
 
     @AfterEach
     void tearDown() {
         repository.deleteAll();
         withGenerateIdRepository.deleteAll();
+        indexedRepository.deleteAll();
     }
 
     @BeforeEach
@@ -116,6 +127,147 @@ abstract class RepositoryTest {
         assertThat(repository.findAll()).extracting(Dto::getId).contains(-1, 5, 25);
     }
 
+    @Test
+    void saveAllIntoSeveralClusters() {
+        repository.save(new Dto(-1000));
+        List<Dto> list = Stream.iterate(-2000, id -> id + 1)
+                .limit(30_000)
+                .map(Dto::new)
+                .collect(Collectors.toList());
+
+        repository.saveAll(list);
+
+        assertThat(repository.findAll()).hasSize(30_000);
+        assertThat(repository.findAllById(List.of(-2000, -1000, 0, 5, 25, 27_999))).hasSize(6);
+    }
+
+    @Test
+    void saveAllIntoSeveralClustersWithCommitTransaction() {
+        repository.save(new Dto(-1000));
+        List<Dto> list = List.of(new Dto(-2000), new Dto(-1500), new Dto(-1000), new Dto(0), new Dto(30));
+
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.saveAll(list, transaction);
+        assertThat(repository.findAll(transaction)).hasSize(8);
+        transaction.commit();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-2000, -1500, -1000, -1, 0, 5, 25, 30);
+    }
+
+    @Test
+    void saveAllWithRowLockingTransaction() {
+        List<Dto> list = List.of(new Dto(-20), new Dto(2), new Dto(2), new Dto(30));
+
+        Transaction transaction = Transaction.rowLockingTransaction();
+        repository.saveAll(list, transaction);
+        transaction.commit();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-20, -1, 2, 5, 25, 30);
+    }
+
+    @Test
+    @SneakyThrows
+    void bulkChangesShouldWaitForTransaction() {
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.save(new Dto(7), transaction);
+        Thread committer = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            transaction.commit();
+        });
+        committer.start();
+
+        repository.saveAll(List.of(new Dto(6), new Dto(8)));
+        committer.join();
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-1, 5, 6, 7, 8, 25);
+
+        Transaction deleting = Transaction.waitingTransaction();
+        repository.save(new Dto(9), deleting);
+        Thread rollbacker = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            deleting.rollback();
+        });
+        rollbacker.start();
+
+        repository.deleteByIdRange(6, 9);
+        rollbacker.join();
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-1, 5, 25);
+    }
+
+    @Test
+    @SneakyThrows
+    void bulkSaveShouldFindClustersAgainAfterSplitWhileWaiting() {
+        repository.saveAll(IntStream.range(100, 2200).mapToObj(Dto::new).collect(Collectors.toList()));
+        Transaction transaction = Transaction.rowLockingTransaction();
+        repository.save(new Dto(7), transaction);
+        Thread saver = new Thread(() -> repository.saveAll(List.of(new Dto(7), new Dto(5000))));
+        saver.start();
+        Thread.sleep(200);
+
+        repository.saveAll(IntStream.range(2200, 4400).mapToObj(Dto::new).collect(Collectors.toList()));
+        transaction.commit();
+        saver.join();
+
+        assertThat(repository.findById(5000)).isPresent();
+        assertThat(repository.findAllById(List.of(7, 5000))).containsOnlyKeys(7, 5000);
+    }
+
+    @Test
+    @SneakyThrows
+    void findByIdShouldSeeExistingRecordsWhileOtherRecordsAreInserted() {
+        repository.saveAll(IntStream.range(0, 2000).map(id -> id * 2).mapToObj(Dto::new).collect(Collectors.toList()));
+        Thread saver = new Thread(() -> IntStream.range(0, 2000)
+                .forEach(id -> repository.save(new Dto(id * 2 + 1))));
+        List<Integer> lost = new ArrayList<>();
+        saver.start();
+
+        while (saver.isAlive()) {
+            IntStream.range(0, 2000)
+                    .map(id -> id * 2)
+                    .filter(id -> repository.findById(id).isEmpty())
+                    .forEach(lost::add);
+        }
+        saver.join();
+
+        assertThat(lost).isEmpty();
+        assertThat(repository.findById(3999)).isPresent();
+    }
+
+    @Test
+    void findAllByEqualityOfIndexedFieldShouldFollowChanges() {
+        indexedRepository.saveAll(List.of(new IndexedDto(1, "a"), new IndexedDto(2, "b"), new IndexedDto(3, "a"),
+                new IndexedDto(10, "a"), new IndexedDto(11, "a")));
+        indexedRepository.save(new IndexedDto(2, "a"));
+        indexedRepository.save(new IndexedDto(3, "c"));
+        indexedRepository.deleteById(1);
+        indexedRepository.deleteByIdRange(10, 12);
+        Transaction transaction = Transaction.waitingTransaction();
+        indexedRepository.save(new IndexedDto(4, "a"), transaction);
+        indexedRepository.save(new IndexedDto(2, "b"), transaction);
+        transaction.commit();
+        Transaction rowLocking = Transaction.rowLockingTransaction();
+        indexedRepository.save(new IndexedDto(5, "a"), rowLocking);
+        indexedRepository.deleteById(4, rowLocking);
+        rowLocking.commit();
+
+        assertThat(indexedRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "a")))
+                .extracting(IndexedDto::getId).containsExactly(5);
+        assertThat(indexedRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "b")))
+                .extracting(IndexedDto::getId).containsExactly(2);
+        assertThat(indexedRepository.findAll(new FieldCondition<>("name", CompareMode.EQUALS, "d"))).isEmpty();
+        assertThat(indexedRepository.findAll(new FieldCondition<>("name", CompareMode.NOT_EQUALS, "a")))
+                .extracting(IndexedDto::getId).containsExactlyInAnyOrder(2, 3);
+        assertThat(indexedRepository.findAll(new FieldCondition<>("id", CompareMode.EQUALS, 3)))
+                .extracting(IndexedDto::getName).containsExactly("c");
+    }
+
     @Test
     void saveAllWithFullGenerateId() {
         List<DtoWithGenerateId> list = List.of(new DtoWithGenerateId(2),
@@ -164,6 +316,160 @@ abstract class RepositoryTest {
         assertThat(repository.findById(5)).isPresent().get().isEqualTo(new Dto(5));
     }
 
+    @Test
+    void findAllById() {
+        assertThat(repository.findAllById(List.of(5, 25, 7, 5, -100)))
+                .containsOnlyKeys(5, 25)
+                .containsEntry(5, new Dto(5));
+    }
+
+    @Test
+    void findAllByIdWithTransaction() {
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.save(new Dto(7), transaction);
+        repository.deleteById(25, transaction);
+
+        assertThat(repository.findAllById(List.of(-1, 5, 7, 25), transaction)).containsOnlyKeys(-1, 5, 7);
+        transaction.commit();
+    }
+
+    @Test
+    @SneakyThrows
+    void asyncRepositoryShouldExecuteOperationsOnExecutor() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncRepository<Dto> asyncRepository = DataStorage.getDataStorage()
+                .getAsyncRepositoryForClass(Dto.class, executor);
+
+        assertThat(asyncRepository.save(new Dto(7)).get()).isEqualTo(new Dto(7));
+        assertThat(asyncRepository.findById(7).get()).contains(new Dto(7));
+        assertThat(asyncRepository.saveAll(List.of(new Dto(8), new Dto(9))).get()).hasSize(2);
+        assertThat(asyncRepository.findAll(new FieldCondition<>("id", CompareMode.MORE, 6)).get())
+                .extracting(Dto::getId).containsOnly(7, 8, 9, 25);
+        assertThat(asyncRepository.deleteById(8).get()).isPresent();
+        assertThat(asyncRepository.delete(new Dto(9)).get()).isPresent();
+        executor.shutdown();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-1, 5, 7, 25);
+    }
+
+    @Test
+    void streamShouldWalkClustersInOrder() {
+        repository.save(new Dto(-10));
+
+        assertThat(repository.stream().map(Dto::getId)).containsExactly(-10, -1, 5, 25);
+        assertThat(repository.stream().parallel().map(Dto::getId).collect(Collectors.toList()))
+                .containsExactly(-10, -1, 5, 25);
+        assertThat(repository.stream(new FieldCondition<>("id", CompareMode.MORE, 0)).map(Dto::getId))
+                .containsExactly(5, 25);
+        try (Stream<Dto> stream = repository.stream()) {
+            assertThat(stream.findFirst()).contains(new Dto(-10));
+        }
+    }
+
+    @Test
+    void findPageShouldContinueFromCursor() {
+        repository.saveAll(Stream.iterate(100, it -> it + 1).limit(3000).map(Dto::new).collect(Collectors.toSet()));
+
+        List<Integer> ids = new ArrayList<>();
+        Page<Dto> page = repository.findPage(null, 700);
+        ids.addAll(page.getRecords().stream().map(Dto::getId).collect(Collectors.toList()));
+        while (page.getNextCursor().isPresent()) {
+            page = repository.findPage(page.getNextCursor().get(), 700);
+            ids.addAll(page.getRecords().stream().map(Dto::getId).collect(Collectors.toList()));
+        }
+
+        assertThat(ids).hasSize(3003).isSorted().startsWith(-1, 5, 25, 100).endsWith(3099);
+    }
+
+    @Test
+    void findByIdRange() {
+        repository.saveAll(Stream.iterate(100, it -> it + 1).limit(3000).map(Dto::new).collect(Collectors.toSet()));
+
+        assertThat(repository.findByIdRange(0, 1500)).extracting(Dto::getId)
+                .containsExactlyElementsOf(Stream.concat(Stream.of(5, 25), Stream.iterate(100, it -> it + 1).limit(1400))
+                        .collect(Collectors.toList()));
+        assertThat(repository.findByIdRange(-5, 2500, 3)).extracting(Dto::getId).containsExactly(-1, 5, 25);
+        assertThat(repository.findByIdRange(3000, 5000, 1000)).hasSize(100);
+        assertThat(repository.findByIdRange(25, 25)).isEmpty();
+    }
+
+    @Test
+    void findPageWithCondition() {
+        Page<Dto> first = repository.findPage(null, 1, new FieldCondition<>("id", CompareMode.MORE, 0));
+        Page<Dto> second = repository.findPage(first.getNextCursor().orElseThrow(), 1,
+                new FieldCondition<>("id", CompareMode.MORE, 0));
+
+        assertThat(first.getRecords()).containsExactly(new Dto(5));
+        assertThat(second.getRecords()).containsExactly(new Dto(25));
+        assertThat(repository.findPage(second.getNextCursor().orElseThrow(), 1).getRecords()).isEmpty();
+        assertThat(repository.findPage(null, 5).getNextCursor()).isEmpty();
+        assertThatThrownBy(() -> repository.findPage(null, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void publishAllShouldEmitRecordsByRequest() {
+        repository.save(new Dto(-10));
+
+        assertThat(collect(repository.publishAll(), 1)).extracting(Dto::getId).containsOnly(-10, -1, 5, 25);
+        assertThat(collect(repository.publishAll(new FieldCondition<>("id", CompareMode.MORE, 0)), Long.MAX_VALUE))
+                .extracting(Dto::getId).containsOnly(5, 25);
+    }
+
+    @Test
+    void publishAllShouldStopAfterCancelAndWrongRequest() {
+        List<Object> signals = new ArrayList<>();
+        repository.publishAll().subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(10);
+            }
+
+            @Override
+            public void onNext(Dto item) {
+                signals.add(item);
+                subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+        repository.publishAll().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(Dto item) {
+                signals.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+
+        assertThat(signals).hasSize(2);
+        assertThat(signals.get(0)).isInstanceOf(Dto.class);
+        assertThat(signals.get(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void deleteById() {
         repository.deleteById(-1);
@@ -171,6 +477,30 @@ abstract class RepositoryTest {
         assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(5, 25);
     }
 
+    @Test
+    void deleteAllById() {
+        assertThat(repository.deleteAllById(List.of(-1, 25, 7))).containsOnlyKeys(-1, 25);
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(5);
+    }
+
+    @Test
+    void deleteAllByIdWithTransaction() {
+        Transaction transaction = Transaction.waitingTransaction();
+        assertThat(repository.deleteAllById(List.of(-1, 25, 7), transaction)).containsOnlyKeys(-1, 25);
+        transaction.commit();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(5);
+    }
+
+    @Test
+    void deleteByIdRange() {
+        repository.save(new Dto(-10));
+        repository.deleteByIdRange(-5, 10);
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(-10, 25);
+    }
+
     @Test
     void deleteByIdWithCommitTransaction() {
         Transaction transaction = Transaction.waitingTransaction();
@@ -244,7 +574,7 @@ abstract class RepositoryTest {
 
         assertThat(Arrays.stream(Objects.requireNonNull(Path
                         .of("data", Dto.class.getName().replace('.', '_')).toFile()
-                        .listFiles((dir, name) -> !name.equals("_sequence.imnorm"))))
+                        .listFiles((dir, name) -> !name.startsWith("_"))))
                 .flatMap(file -> {
                     try {
                         return Files.lines(file.toPath());
@@ -329,6 +659,35 @@ abstract class RepositoryTest {
         assertThat(repository.size()).isEqualTo(3);
     }
 
+    @Test
+    void sizeShouldFollowChanges() {
+        repository.saveAll(Stream.iterate(100, it -> it + 1).limit(3000).map(Dto::new).collect(Collectors.toList()));
+        repository.save(new Dto(5));
+        repository.deleteById(-1);
+        repository.deleteByIdRange(100, 200);
+        assertThat(repository.size()).isEqualTo(2902);
+
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.save(new Dto(-500), transaction);
+        repository.save(new Dto(-600), transaction);
+        repository.deleteById(25, transaction);
+        assertThat(repository.size()).isEqualTo(2902);
+        transaction.commit();
+        assertThat(repository.size()).isEqualTo(2903);
+
+        transaction = Transaction.rowLockingTransaction();
+        repository.save(new Dto(-700), transaction);
+        repository.deleteById(-500, transaction);
+        repository.deleteById(-501, transaction);
+        transaction.commit();
+        assertThat(repository.size()).isEqualTo(2903);
+
+        transaction = Transaction.waitingTransaction();
+        repository.deleteById(-700, transaction);
+        transaction.rollback();
+        assertThat(repository.size()).isEqualTo(2903);
+    }
+
     @Test
     void existsByIdMustReturnTrue() {
         assertThat(repository.existsById(5)).isTrue();
@@ -338,4 +697,41 @@ abstract class RepositoryTest {
     void existsByIdMustReturnFalse() {
         assertThat(repository.existsById(2)).isFalse();
     }
+
+    protected static <Record> List<Record> collect(final Flow.Publisher<Record> publisher, final long portion) {
+        List<Record> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private long requested;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                requested = portion;
+                subscription.request(portion);
+            }
+
+            @Override
+            public void onNext(Record item) {
+                received.add(item);
+                if (--requested == 0) {
+                    requested = portion;
+                    subscription.request(portion);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.set(true);
+            }
+        });
+        assertThat(completed).isTrue();
+        return received;
+    }
 }
@@ -2,19 +2,36 @@ package io.github.alekseykn.imnorm;
 
 import com.google.gson.Gson;
 import io.github.alekseykn.imnorm.exceptions.DeadLockException;
+import io.github.alekseykn.imnorm.exceptions.LockTimeoutException;
+import io.github.alekseykn.imnorm.exceptions.OptimisticLockException;
+import io.github.alekseykn.imnorm.exceptions.TransactionExpiredException;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import support.dto.Dto;
+import support.dto.StringDto;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -301,7 +318,7 @@ class TransactionTest {
             Transaction transaction = Transaction.waitingTransaction();
             first.forEach(id -> repository.save(new Dto(id), transaction));
             transaction.commit();
-        }).isInstanceOf(DeadLockException.class);
+        }).isInstanceOf(LockTimeoutException.class);
     }
 
     @Test
@@ -381,4 +398,603 @@ class TransactionTest {
         })).isPresent().get().isInstanceOf(RuntimeException.class);
         assertThat(repository.size()).isEqualTo(0);
     }
+
+    @Test
+    @SneakyThrows
+    void rowLockingTransactionsShouldWriteDifferentRecordsOfOneClusterWithoutWaiting() {
+        repository.save(new Dto(0));
+
+        Thread thread = new Thread(() -> {
+            Transaction transaction = Transaction.rowLockingTransaction();
+            Stream.iterate(1, integer -> integer + 2)
+                    .limit(50)
+                    .forEach(id -> repository.save(new Dto(id), transaction));
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            transaction.commit();
+        });
+        thread.start();
+        Thread.sleep(300);
+
+        Transaction transaction = Transaction.rowLockingTransaction();
+        Stream.iterate(2, integer -> integer + 2)
+                .limit(50)
+                .forEach(id -> repository.save(new Dto(id), transaction));
+        transaction.commit();
+        thread.join();
+
+        assertThat(repository.findAll())
+                .extracting(Dto::getId)
+                .containsAll(Stream.iterate(0, integer -> integer + 1).limit(101).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @SneakyThrows
+    void rowLockingTransactionShouldThrowExceptionWithWritingOfCapturedRecord() {
+        repository.save(new Dto(0));
+
+        Thread thread = new Thread(() -> {
+            Transaction transaction = Transaction.rowLockingTransaction();
+            repository.save(new Dto(5), transaction);
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            transaction.commit();
+        });
+        thread.start();
+        Thread.sleep(500);
+
+        assertThatThrownBy(() -> repository.save(new Dto(5), Transaction.rowLockingTransaction(100)))
+                .isInstanceOf(LockTimeoutException.class);
+        thread.join();
+    }
+
+    @Test
+    void rowLockingTransactionShouldSeeOwnChangesAndRollbackThem() {
+        repository.save(new Dto(10));
+        repository.save(new Dto(20));
+
+        Transaction transaction = Transaction.rowLockingTransaction();
+        repository.save(new Dto(30), transaction);
+        repository.deleteById(10, transaction);
+
+        assertThat(repository.findById(30, transaction)).isPresent();
+        assertThat(repository.findById(10, transaction)).isEmpty();
+        assertThat(repository.findById(20, transaction)).isPresent();
+        assertThat(repository.findAll(transaction)).extracting(Dto::getId).containsOnly(20, 30);
+        transaction.rollback();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(10, 20);
+    }
+
+    @Test
+    void nonTransactionalWritingShouldWaitOnlyForRecordCapturedByRowLockingTransaction() {
+        repository.save(new Dto(0));
+
+        Transaction transaction = Transaction.rowLockingTransaction();
+        repository.save(new Dto(5), transaction);
+        repository.save(new Dto(6));
+
+        assertThatThrownBy(() -> repository.save(new Dto(5))).isInstanceOf(LockTimeoutException.class);
+        repository.deleteById(0);
+        transaction.commit();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(5, 6);
+    }
+
+    @Test
+    void optimisticTransactionShouldApplyChangesOnlyAfterCommit() {
+        repository.save(new Dto(10));
+
+        Transaction transaction = Transaction.optimisticTransaction();
+        repository.save(new Dto(20), transaction);
+        repository.deleteById(10, transaction);
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(10);
+        assertThat(repository.findAll(transaction)).extracting(Dto::getId).containsOnly(20);
+        transaction.commitAndFlush();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(20);
+    }
+
+    @Test
+    void optimisticTransactionShouldThrowExceptionWhenReadRecordWasChanged() {
+        repository.save(new Dto(10));
+
+        Transaction transaction = Transaction.optimisticTransaction();
+        assertThat(repository.findById(10, transaction)).isPresent();
+        repository.save(new Dto(20), transaction);
+        repository.deleteById(10);
+
+        assertThatThrownBy(transaction::commit).isInstanceOf(OptimisticLockException.class);
+        assertThat(repository.findAll()).isEmpty();
+    }
+
+    @Test
+    void optimisticTransactionShouldThrowExceptionWhenClusterIsCapturedByOtherTransaction() {
+        repository.save(new Dto(10));
+
+        Transaction optimistic = Transaction.optimisticTransaction();
+        repository.save(new Dto(20), optimistic);
+        Transaction waiting = Transaction.waitingTransaction();
+        repository.save(new Dto(30), waiting);
+
+        assertThatThrownBy(optimistic::commit).isInstanceOf(OptimisticLockException.class);
+        waiting.commit();
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(10, 30);
+    }
+
+    @Test
+    void optimisticTransactionShouldNotWaitForOtherTransactionsAndRollbackChanges() {
+        repository.save(new Dto(10));
+
+        Transaction waiting = Transaction.waitingTransaction();
+        repository.save(new Dto(20), waiting);
+        Transaction optimistic = Transaction.optimisticTransaction();
+        assertThat(repository.findById(10, optimistic)).isPresent();
+        repository.save(new Dto(30), optimistic);
+        optimistic.rollback();
+        waiting.commit();
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(10, 20);
+    }
+
+    @Test
+    void executeInOptimisticTransactionWithRetryShouldRetryAfterConflict() {
+        repository.save(new Dto(10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThat(Transaction.executeInOptimisticTransactionWithRetry(transaction -> {
+            repository.findAll(transaction);
+            repository.save(new Dto(20), transaction);
+            if (attempts.incrementAndGet() == 1) {
+                repository.save(new Dto(30));
+            }
+        })).isEmpty();
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(10, 20, 30);
+    }
+
+    @Test
+    void executeInOptimisticTransactionWithRetryShouldStopAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThat(Transaction.executeInOptimisticTransactionWithRetry(transaction -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockException();
+        }, RetryPolicy.exponentialBackoff()
+                .withBackoff(Duration.ofMillis(1), Duration.ofMillis(5))
+                .withMaxAttempts(3))).containsInstanceOf(OptimisticLockException.class);
+
+        assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    @SneakyThrows
+    void waitingTransactionShouldCaptureClusterRightAfterRelease() {
+        repository.save(new Dto(0));
+        AtomicLong releaseTime = new AtomicLong();
+
+        Thread thread = new Thread(() -> {
+            Transaction transaction = Transaction.waitingTransaction();
+            repository.save(new Dto(1), transaction);
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            releaseTime.set(System.nanoTime());
+            transaction.commit();
+        });
+        thread.start();
+        Thread.sleep(100);
+
+        Transaction transaction = Transaction.waitingTransaction(5000);
+        repository.save(new Dto(2), transaction);
+        long captureTime = System.nanoTime();
+        transaction.commit();
+        thread.join();
+
+        assertThat(releaseTime.get()).isNotZero().isLessThan(captureTime);
+        assertThat(captureTime - releaseTime.get()).isLessThan(TimeUnit.MILLISECONDS.toNanos(5000));
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 2);
+    }
+
+    @Test
+    @SneakyThrows
+    void waitingTransactionsShouldAbortYoungestTransactionOfDeadLockWithoutWaitingForTimeout() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+        Transaction older = Transaction.waitingTransaction(10_000);
+        Transaction younger = Transaction.waitingTransaction(10_000);
+        repository.save(new Dto(1), older);
+        repository.save(new Dto(100_001), younger);
+
+        Thread thread = new Thread(() -> {
+            repository.save(new Dto(100_002), older);
+            older.commit();
+        });
+        thread.start();
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+
+        assertThatThrownBy(() -> repository.save(new Dto(2), younger)).isInstanceOf(DeadLockException.class);
+        thread.join();
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 100_000, 100_002);
+    }
+
+    @Test
+    @SneakyThrows
+    void waitingTransactionShouldAbortOtherYoungerTransactionOfDeadLock() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+        Transaction older = Transaction.waitingTransaction(10_000);
+        Transaction younger = Transaction.waitingTransaction(10_000);
+        repository.save(new Dto(1), older);
+        repository.save(new Dto(100_001), younger);
+        Set<Exception> exceptions = ConcurrentHashMap.newKeySet();
+
+        Thread thread = new Thread(() -> {
+            try {
+                repository.save(new Dto(2), younger);
+            } catch (DeadLockException e) {
+                exceptions.add(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        repository.save(new Dto(100_002), older);
+        older.commit();
+        thread.join();
+
+        assertThat(exceptions).hasSize(1);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 100_000, 100_002);
+    }
+
+    @Test
+    @SneakyThrows
+    void deadLockShouldBeFoundAfterClusterPassedToOtherWaitingTransaction() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+        Transaction holder = Transaction.waitingTransaction(10_000);
+        Transaction older = Transaction.waitingTransaction(10_000);
+        Transaction middle = Transaction.waitingTransaction(10_000);
+        Transaction younger = Transaction.waitingTransaction(10_000);
+        repository.save(new Dto(1), holder);
+        repository.save(new Dto(100_001), younger);
+        Set<Exception> exceptions = ConcurrentHashMap.newKeySet();
+
+        Thread olderThread = new Thread(() -> {
+            repository.save(new Dto(2), older);
+            repository.save(new Dto(100_002), older);
+            older.commit();
+        });
+        Thread middleThread = new Thread(() -> {
+            repository.save(new Dto(3), middle);
+            middle.commit();
+        });
+        Thread youngerThread = new Thread(() -> {
+            try {
+                repository.save(new Dto(4), younger);
+            } catch (DeadLockException e) {
+                exceptions.add(e);
+            }
+        });
+        olderThread.start();
+        Thread.sleep(100);
+        middleThread.start();
+        Thread.sleep(100);
+        youngerThread.start();
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+        holder.commit();
+        olderThread.join();
+        middleThread.join();
+        youngerThread.join();
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+        assertThat(exceptions).hasSize(1);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 2, 3, 100_000, 100_002);
+    }
+
+    @Test
+    @SneakyThrows
+    void declaredTransactionsShouldNotFallIntoDeadLockWithOppositeOrderOfAccess() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+        Set<Exception> exceptions = ConcurrentHashMap.newKeySet();
+
+        Thread thread = new Thread(() -> Transaction.declaredTransaction()
+                .withIds(repository, 1, 100_001)
+                .execute(transaction -> {
+                    repository.save(new Dto(1), transaction);
+                    repository.save(new Dto(100_001), transaction);
+                }).ifPresent(exceptions::add));
+        thread.start();
+        Transaction.declaredTransaction()
+                .withIds(repository, 100_002, 2)
+                .execute(transaction -> {
+                    repository.save(new Dto(100_002), transaction);
+                    repository.save(new Dto(2), transaction);
+                }).ifPresent(exceptions::add);
+        thread.join();
+
+        assertThat(exceptions).isEmpty();
+        assertThat(repository.findAll()).extracting(Dto::getId)
+                .containsOnly(0, 1, 2, 100_000, 100_001, 100_002);
+    }
+
+    @Test
+    void declaredTransactionShouldCaptureClustersOfRangeAtBeginning() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+
+        Transaction transaction = Transaction.declaredTransaction(100)
+                .withIdRange(repository, 0, 200_000)
+                .begin();
+
+        assertThatThrownBy(() -> repository.save(new Dto(100_001), Transaction.waitingTransaction(100)))
+                .isInstanceOf(LockTimeoutException.class);
+        transaction.commit();
+        assertThat(Transaction.declaredTransaction()
+                .withIds(repository, 5)
+                .execute(declared -> {
+                    repository.save(new Dto(5), declared);
+                    throw new IllegalStateException();
+                })).containsInstanceOf(IllegalStateException.class);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 100_000);
+    }
+
+    @Test
+    void commitAndFlushShouldWriteOnlyClustersOfTransaction() {
+        repository.save(new Dto(100_000));
+        repository.save(new Dto(0));
+
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.save(new Dto(1), transaction);
+        transaction.commitAndFlush();
+
+        assertThat(Arrays.stream(Objects.requireNonNull(Path
+                        .of("data", Dto.class.getName().replace('.', '_')).toFile()
+                        .listFiles((dir, name) -> !name.equals("_sequence.imnorm"))))
+                .flatMap(file -> {
+                    try {
+                        return Files.lines(file.toPath());
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).count()).isEqualTo(2);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 100_000);
+    }
+
+    @Test
+    @SneakyThrows
+    void commitAsyncShouldCompleteAfterInterruptOfCommitter() {
+        Transaction first = Transaction.waitingTransaction();
+        repository.save(new Dto(1), first);
+        first.commitAsync().get(10, TimeUnit.SECONDS);
+
+        Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("imnorm-group-committer"))
+                .forEach(Thread::interrupt);
+        Transaction second = Transaction.waitingTransaction();
+        repository.save(new Dto(2), second);
+        second.commitAsync().get(10, TimeUnit.SECONDS);
+
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(1, 2);
+    }
+
+    @Test
+    @SneakyThrows
+    void commitAsyncShouldReleaseClustersAndFlushChangesOfAllTransactions() {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> commits = executor.invokeAll(Stream.iterate(0, id -> id + 1)
+                        .limit(100)
+                        .<Callable<CompletableFuture<Void>>>map(id -> () -> {
+                            Transaction transaction = Transaction.waitingTransaction(10_000);
+                            repository.save(new Dto(id), transaction);
+                            return transaction.commitAsync();
+                        })
+                        .collect(Collectors.toList()))
+                .stream()
+                .map(future -> {
+                    try {
+                        return future.get();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+        executor.shutdown();
+        CompletableFuture.allOf(commits.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(Arrays.stream(Objects.requireNonNull(Path
+                        .of("data", Dto.class.getName().replace('.', '_')).toFile()
+                        .listFiles((dir, name) -> !name.equals("_sequence.imnorm"))))
+                .flatMap(file -> {
+                    try {
+                        return Files.lines(file.toPath());
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }).count()).isEqualTo(100);
+        assertThat(repository.findAll().size()).isEqualTo(100);
+    }
+
+    @Test
+    void expiredTransactionShouldReleaseClustersWhileItsThreadIsAlive() {
+        Transaction expiring = Transaction.waitingTransaction().withMaxDuration(Duration.ofMillis(200));
+        repository.save(new Dto(1), expiring);
+
+        long start = System.currentTimeMillis();
+        Transaction transaction = Transaction.waitingTransaction(10_000);
+        repository.save(new Dto(2), transaction);
+        transaction.commit();
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+        assertThatThrownBy(() -> repository.save(new Dto(3), expiring))
+                .isInstanceOf(TransactionExpiredException.class);
+        assertThatThrownBy(expiring::commit).isInstanceOf(TransactionExpiredException.class);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(2);
+    }
+
+    @Test
+    void expiredTransactionShouldStopWaitingForCluster() {
+        Transaction holding = Transaction.waitingTransaction();
+        repository.save(new Dto(1), holding);
+
+        long start = System.currentTimeMillis();
+        Transaction expiring = Transaction.waitingTransaction(10_000).withMaxDuration(Duration.ofMillis(200));
+        assertThatThrownBy(() -> repository.save(new Dto(2), expiring))
+                .isInstanceOf(TransactionExpiredException.class);
+        assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+        holding.commit();
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(1);
+    }
+
+    @RepeatedTest(50)
+    void expirationDuringOperationsOfTransactionShouldThrowTransactionExpiredException() {
+        repository.save(new Dto(1));
+        Transaction expiring = Transaction.waitingTransaction().withMaxDuration(Duration.ofMillis(20));
+
+        assertThatThrownBy(() -> {
+            while (true) {
+                repository.findById(1, expiring);
+                repository.findAll(expiring);
+            }
+        }).isInstanceOf(TransactionExpiredException.class);
+    }
+
+    @Test
+    @SneakyThrows
+    void thousandsOfConcurrentClientsShouldWaitWithoutHoldingMonitors() {
+        Set<String> monitorUsages = ConcurrentHashMap.newKeySet();
+        Set<Thread> clients = Stream.iterate(0, id -> id + 1)
+                .limit(2000)
+                .map(id -> new Thread(() -> {
+                    Transaction transaction = Transaction.waitingTransaction(60_000);
+                    repository.save(new Dto(id % 50), transaction);
+                    transaction.commit();
+                }, "client-" + id))
+                .collect(Collectors.toSet());
+        clients.forEach(Thread::start);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] clientIds = clients.stream().mapToLong(Thread::getId).toArray();
+        while (clients.stream().anyMatch(Thread::isAlive)) {
+            Arrays.stream(threads.getThreadInfo(clientIds, true, false))
+                    .filter(Objects::nonNull)
+                    .forEach(info -> {
+                        if (info.getThreadState() == Thread.State.BLOCKED && info.getStackTrace().length > 0
+                                && info.getStackTrace()[0].getClassName().startsWith("io.github.alekseykn")) {
+                            monitorUsages.add(info.getStackTrace()[0].toString());
+                        }
+                        Arrays.stream(info.getLockedMonitors())
+                                .filter(monitor -> monitor.getLockedStackFrame().getClassName()
+                                        .startsWith("io.github.alekseykn"))
+                                .forEach(monitor -> monitorUsages.add(monitor.getLockedStackFrame().toString()));
+                    });
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        assertThat(monitorUsages).isEmpty();
+        assertThat(repository.findAll()).hasSize(50);
+    }
+
+    @Test
+    void retryPolicyShouldLimitAttemptsAndCollectStatistics() {
+        assertThat(Transaction.executeInWaitingTransactionWithRetry(transaction -> {
+            repository.save(new Dto(1), transaction);
+            throw new DeadLockException(1);
+        }, RetryPolicy.exponentialBackoff()
+                .withMaxAttempts(3)
+                .withBackoff(Duration.ofMillis(1), Duration.ofMillis(4))
+                .withDeadline(Duration.ofSeconds(10)))).containsInstanceOf(DeadLockException.class);
+
+        RetryStatistics statistics = RetryPolicy.getStatistics().entrySet().stream()
+                .filter(entry -> entry.getKey().contains("retryPolicyShouldLimitAttemptsAndCollectStatistics"))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow();
+        assertThat(statistics.getCalls()).isEqualTo(1);
+        assertThat(statistics.getAttempts()).isEqualTo(3);
+        assertThat(statistics.getAborts()).isEqualTo(3);
+        assertThat(statistics.getWastedTime().isNegative()).isFalse();
+        assertThat(statistics.getWaitTime()).isEqualTo(250);
+        assertThat(repository.findAll()).isEmpty();
+    }
+
+    @Test
+    @SneakyThrows
+    void retryPolicyShouldIncreaseWaitTimeAfterTimeouts() {
+        repository.save(new Dto(0));
+        Transaction transaction = Transaction.waitingTransaction();
+        repository.save(new Dto(1), transaction);
+
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            transaction.commit();
+        });
+        thread.start();
+        assertThat(Transaction.executeInWaitingTransactionWithRetry(retried ->
+                        repository.save(new Dto(2), retried),
+                RetryPolicy.exponentialBackoff().withWaitTime(20).withRetryOnTimeout())).isEmpty();
+        thread.join();
+
+        RetryStatistics statistics = RetryPolicy.getStatistics().entrySet().stream()
+                .filter(entry -> entry.getKey().contains("retryPolicyShouldIncreaseWaitTimeAfterTimeouts"))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElseThrow();
+        assertThat(statistics.getAborts()).isPositive();
+        assertThat(statistics.getWaitTime()).isGreaterThan(20);
+        assertThat(repository.findAll()).extracting(Dto::getId).containsOnly(0, 1, 2);
+    }
+
+    @Test
+    @SneakyThrows
+    void blockingTransactionsWithDifferentRepositoriesShouldWorkSimultaneously() {
+        Repository<StringDto> otherRepository = DataStorage.getDataStorage().getRepositoryForClass(StringDto.class);
+        Transaction first = Transaction.blockingTransaction(repository);
+        repository.save(new Dto(1), first);
+        Set<Transaction> opened = ConcurrentHashMap.newKeySet();
+
+        Thread scoped = new Thread(() -> {
+            Transaction transaction = Transaction.blockingTransaction(10, otherRepository);
+            otherRepository.save(new StringDto("first"), transaction);
+            transaction.commit();
+            opened.add(transaction);
+        });
+        Thread global = new Thread(() -> {
+            Transaction transaction = Transaction.blockingTransaction();
+            opened.add(transaction);
+            transaction.commit();
+        });
+        scoped.start();
+        scoped.join(5000);
+        global.start();
+        Thread.sleep(300);
+
+        assertThat(opened).hasSize(1);
+        first.commit();
+        global.join();
+        assertThat(opened).hasSize(2);
+        assertThat(otherRepository.findAll()).extracting(StringDto::getId).containsOnly("first");
+        otherRepository.deleteAll();
+    }
 }
@@ -44,9 +44,9 @@ class ClusterFileManipulatorTest {
         printWriter.println("10:{\"id\":10}#");
         printWriter.println("20:{\"id\":20}#");
         printWriter.close();
-        Map<Integer, Map<Object, Dto>> expected = new TreeMap<>();
-        expected.put(10, Map.of(10, new Dto(10)));
-        expected.put(20, Map.of(20, new Dto(20)));
+        Map<Long, Map<Object, Dto>> expected = new TreeMap<>();
+        expected.put(10L, Map.of(10, new Dto(10)));
+        expected.put(20L, Map.of(20, new Dto(20)));
 
         ClusterFileManipulator<Dto> manipulator = new ClusterFileManipulator<>(Dto.class, intId);
 
@@ -57,9 +57,9 @@ class ClusterFileManipulatorTest {
     @SneakyThrows
     void writeWithoutCollision() {
         ClusterFileManipulator<Dto> manipulator = new ClusterFileManipulator<>(Dto.class, intId);
-        TreeMap<Integer, Map<Object, Dto>> actual = new TreeMap<>();
-        actual.put(25, Map.of(25, new Dto(25)));
-        actual.put(-268, Map.of(-268, new Dto(-268)));
+        TreeMap<Long, Map<Object, Dto>> actual = new TreeMap<>();
+        actual.put(25L, Map.of(25, new Dto(25)));
+        actual.put(-268L, Map.of(-268, new Dto(-268)));
 
         manipulator.write(file, actual);
 
@@ -77,9 +77,9 @@ class ClusterFileManipulatorTest {
         int hashCode = first.hashCode();
         String second = UUID.randomUUID().toString();
         String third = UUID.randomUUID().toString();
-        TreeMap<Integer, Map<Object, StringDto>> actual = new TreeMap<>();
-        actual.put(hashCode, Map.of(first, new StringDto(first), second, new StringDto(second)));
-        actual.put(hashCode + 1, Map.of(third, new StringDto(third)));
+        TreeMap<Long, Map<Object, StringDto>> actual = new TreeMap<>();
+        actual.put((long) hashCode, Map.of(first, new StringDto(first), second, new StringDto(second)));
+        actual.put(hashCode + 1L, Map.of(third, new StringDto(third)));
         ClusterFileManipulator<StringDto> manipulator = new ClusterFileManipulator<>(StringDto.class, stringId);
 
         manipulator.write(file, actual);
@@ -98,10 +98,10 @@ class ClusterFileManipulatorTest {
         printWriter.println("20:{\"id\":\"abcd\"}#");
         printWriter.println("892:{\"id\":\"gdfgdfgs\"}#{\"id\":\"abcasertrdfad\"}#{\"id\":\"abcgfagergdfvbsrthd\"}#");
         printWriter.close();
-        TreeMap<Integer, Map<Object, StringDto>> expected = new TreeMap<>();
-        expected.put(10, Map.of("aaa", new StringDto("aaa"), "bbb", new StringDto("bbb")));
-        expected.put(20, Map.of("abcd", new StringDto("abcd")));
-        expected.put(892, Map.of("gdfgdfgs", new StringDto("gdfgdfgs"),
+        TreeMap<Long, Map<Object, StringDto>> expected = new TreeMap<>();
+        expected.put(10L, Map.of("aaa", new StringDto("aaa"), "bbb", new StringDto("bbb")));
+        expected.put(20L, Map.of("abcd", new StringDto("abcd")));
+        expected.put(892L, Map.of("gdfgdfgs", new StringDto("gdfgdfgs"),
                 "abcasertrdfad", new StringDto("abcasertrdfad"),
                 "abcgfagergdfvbsrthd", new StringDto("abcgfagergdfvbsrthd")));
 
@@ -0,0 +1,18 @@
+package support.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import io.github.alekseykn.imnorm.annotations.Id;
+import io.github.alekseykn.imnorm.annotations.Indexed;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class IndexedDto {
+    @Id
+    private int id;
+
+    @Indexed
+    private String name;
+}
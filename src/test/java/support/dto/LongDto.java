@@ -0,0 +1,14 @@
+package support.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import io.github.alekseykn.imnorm.annotations.Id;
+
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class LongDto {
+    @Id
+    private long id;
+}